@@ -0,0 +1,245 @@
+/**
+ * The AssetManager class loads the game's images in the background and keeps them for the rest
+ * of the session, so opening a game window or starting a level never reads an image file again.
+ *
+ * Images are looked up in this order: the packed asset archive named by the system property
+ * "sokoban.assets" (a zip file), the classpath, and finally the working directory.
+ * Sprites contained in the texture atlas ({@link TextureAtlas#IMAGE_FILE}) are served as views
+ * into the atlas, which is decoded once; any other image is decoded on its own. A sprite file in
+ * the working directory that is newer than the atlas image is read from its own file instead, so an
+ * edited sprite shows up before the atlas is regenerated (see {@link TextureAtlas#main(String[])}).
+ * All requested images are decoded in parallel; the time each one took is recorded.
+ */
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+public class AssetManager {
+
+    /**
+     * The images used by the game window.
+     */
+    public static final String[] GAME_SPRITES = {
+            "box.png", "floor.png", "box_target.png", "wall1.png", "player.png",
+            "coin.png", "lavav.png", "PortalPurple.png", "PortalGreen.png"
+    };
+
+    /**
+     * Number of threads decoding images.
+     */
+    private static final int LOADER_THREADS = 4;
+
+    // The loaded (or loading) images by name.
+    private static final Map<String, CompletableFuture<BufferedImage>> images = new ConcurrentHashMap<>();
+
+    // The texture atlas, loaded once on first use; completes with null if there is none.
+    private static CompletableFuture<TextureAtlas> atlas;
+
+    // The time each image took to load, in nanoseconds.
+    private static final Map<String, Long> loadTimes = new ConcurrentHashMap<>();
+
+    // When the first image was requested and when the last one finished, in System.nanoTime() units.
+    private static final AtomicLong firstRequest = new AtomicLong();
+    private static final AtomicLong lastCompletion = new AtomicLong();
+
+    // Daemon threads that read and decode images, so loading never keeps the application alive.
+    private static final ExecutorService loader = Executors.newFixedThreadPool(LOADER_THREADS, task -> {
+        Thread thread = new Thread(task, "Sokoban asset loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Starts loading images in the background. Images that are already loaded or loading are skipped.
+     *
+     * @param names The file names of the images.
+     */
+    public static void preload(String... names) {
+        for (String name : names) {
+            load(name);
+        }
+    }
+
+    /**
+     * Starts loading an image, or returns the pending or finished load.
+     *
+     * @param name The file name of the image.
+     * @return The image once it is loaded; completes exceptionally if it cannot be loaded.
+     */
+    public static CompletableFuture<BufferedImage> load(String name) {
+        return images.computeIfAbsent(name, key -> {
+            firstRequest.compareAndSet(0, System.nanoTime());
+            return atlas().thenApplyAsync(packed -> packed != null && packed.contains(key) && !isNewerThanAtlas(key)
+                    ? packed.getSprite(key)
+                    : read(key), loader);
+        });
+    }
+
+    /**
+     * Starts loading the texture atlas, or returns the pending or finished load.
+     *
+     * @return The atlas, or null if the game has no atlas files.
+     */
+    public static synchronized CompletableFuture<TextureAtlas> atlas() {
+        if (atlas == null) {
+            firstRequest.compareAndSet(0, System.nanoTime());
+            atlas = CompletableFuture.supplyAsync(AssetManager::readAtlas, loader);
+        }
+        return atlas;
+    }
+
+    /**
+     * Reads the texture atlas and records how long it took.
+     */
+    private static TextureAtlas readAtlas() {
+        long start = System.nanoTime();
+        try (InputStream image = open(TextureAtlas.IMAGE_FILE);
+             InputStream index = open(TextureAtlas.INDEX_FILE)) {
+            TextureAtlas result = TextureAtlas.read(image, index);
+            record(TextureAtlas.IMAGE_FILE, start);
+            return result;
+        } catch (NoSuchFileException e) {
+            return null; // No atlas; every image is loaded from its own file.
+        } catch (IOException e) {
+            // Print the stack trace and fall back to the separate image files.
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether a sprite file in the working directory was changed after the atlas image there.
+     */
+    private static boolean isNewerThanAtlas(String name) {
+        Path sprite = Paths.get(name);
+        Path image = Paths.get(TextureAtlas.IMAGE_FILE);
+        try {
+            if (!Files.exists(sprite) || !Files.exists(image)) return false;
+            if (Files.getLastModifiedTime(sprite).compareTo(Files.getLastModifiedTime(image)) <= 0) return false;
+        } catch (IOException e) {
+            return false;
+        }
+        System.err.println(name + " is newer than " + TextureAtlas.IMAGE_FILE
+                + "; run java TextureAtlas to regenerate the atlas");
+        return true;
+    }
+
+    /**
+     * Gets an image, waiting for it if it is still loading.
+     *
+     * @param name The file name of the image.
+     * @return The image, or null if it cannot be loaded.
+     */
+    public static BufferedImage get(String name) {
+        try {
+            return load(name).join();
+        } catch (CompletionException e) {
+            // Print the stack trace if the image cannot be loaded; callers draw a placeholder instead.
+            e.getCause().printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Reads and decodes one image and records how long it took.
+     */
+    private static BufferedImage read(String name) {
+        long start = System.nanoTime();
+        try (InputStream in = open(name)) {
+            BufferedImage image = ImageIO.read(in);
+            if (image == null) {
+                throw new IOException("Unsupported image format: " + name);
+            }
+            return image;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            record(name, start);
+        }
+    }
+
+    /**
+     * Records the load time of an asset.
+     */
+    private static void record(String name, long start) {
+        long end = System.nanoTime();
+        loadTimes.put(name, end - start);
+        if (GameMetrics.ENABLED) GameMetrics.recordAssetLoad(end - start);
+        lastCompletion.accumulateAndGet(end, Math::max);
+    }
+
+    /**
+     * Opens an image from the asset archive, the classpath or the working directory.
+     */
+    private static InputStream open(String name) throws IOException {
+        String archive = System.getProperty("sokoban.assets");
+        if (archive != null) {
+            ZipFile zip = new ZipFile(archive);
+            ZipEntry entry = zip.getEntry(name);
+            if (entry != null) {
+                // Close the archive together with the entry's stream.
+                return new FilterInputStream(zip.getInputStream(entry)) {
+                    @Override
+                    public void close() throws IOException {
+                        super.close();
+                        zip.close();
+                    }
+                };
+            }
+            zip.close();
+        }
+        InputStream resource = AssetManager.class.getResourceAsStream("/" + name);
+        if (resource != null) {
+            return resource;
+        }
+        Path file = Paths.get(name);
+        if (Files.exists(file)) {
+            return Files.newInputStream(file);
+        }
+        throw new NoSuchFileException(name);
+    }
+
+    /**
+     * Describes how long each loaded image took and how long loading took overall.
+     *
+     * @return One line per image, followed by the total.
+     */
+    public static String getLoadReport() {
+        StringBuilder report = new StringBuilder();
+        loadTimes.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(e -> report.append(String.format("%-20s %7.2f ms%n", e.getKey(), e.getValue() / 1e6)));
+        long total = lastCompletion.get() - firstRequest.get();
+        report.append(String.format("%d assets loaded in %.2f ms", loadTimes.size(), Math.max(0, total) / 1e6));
+        return report.toString();
+    }
+
+    /**
+     * Loads all game images and prints the load report.
+     *
+     * @param args Not used.
+     */
+    public static void main(String[] args) {
+        preload(GAME_SPRITES);
+        for (String name : GAME_SPRITES) {
+            get(name);
+        }
+        System.out.println(getLoadReport());
+    }
+}
@@ -0,0 +1,280 @@
+/**
+ * The BinaryLevelPack class reads and writes level packs in a compact binary format.
+ * Every cell takes four bits, and an offset index in the header lets any level be found
+ * with a single lookup, so opening a pack and loading level N take constant time
+ * regardless of the size of the pack.
+ *
+ * File layout (big-endian): magic "SKBP", version byte, level count (int), then one offset (int)
+ * per level, measured from the start of the file. Each level record holds the width and height
+ * (unsigned shorts), the title length (unsigned short) and UTF-8 title, the number of portal
+ * links (unsigned short) followed by x1, y1, x2, y2 of each link (unsigned shorts), and then the
+ * cells in row order, two per byte starting at the low nibble. Version 1 records have no links.
+ * A level whose record runs past the end of the file is rejected with an IllegalArgumentException.
+ */
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class BinaryLevelPack implements LevelSource {
+
+    /**
+     * Magic number at the start of every binary level pack ("SKBP").
+     */
+    private static final int MAGIC = 0x534B4250;
+
+    /**
+     * Current file format version.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * File extension used for binary level packs.
+     */
+    public static final String EXTENSION = ".skbp";
+
+    // Size of the fixed header before the offset index: magic, version and level count.
+    private static final int HEADER_SIZE = 9;
+
+    // The memory-mapped file contents.
+    private final MappedByteBuffer data;
+
+    // The format version of the file.
+    private final int version;
+
+    // Number of levels in the pack.
+    private final int count;
+
+    /**
+     * Opens a binary level pack. Only the header is read.
+     *
+     * @param file The pack file.
+     * @throws IOException if the file cannot be opened or is not a binary level pack.
+     */
+    public BinaryLevelPack(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Level pack too large: " + file);
+            }
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a binary level pack: " + file);
+            }
+            this.data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (data.getInt(0) != MAGIC) {
+            throw new IOException("Not a binary level pack: " + file);
+        }
+        this.version = data.get(4) & 0xFF;
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported level pack version: " + version);
+        }
+        this.count = data.getInt(5);
+        if (count < 0 || HEADER_SIZE + 4L * count > data.limit()) {
+            throw new IOException("Invalid level count: " + count);
+        }
+    }
+
+    /**
+     * Gets the number of levels in the pack.
+     *
+     * @return The number of levels.
+     */
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Decodes a level. The record is located through the offset index without reading other levels.
+     *
+     * @param index The index of the level.
+     * @return The level.
+     * @throws IllegalArgumentException if the level does not exist or its record is truncated.
+     */
+    @Override
+    public Level getLevel(int index) {
+        int pos = recordStart(index);
+        int width = data.getShort(pos) & 0xFFFF;
+        int height = data.getShort(pos + 2) & 0xFFFF;
+        int titleLength = data.getShort(pos + 4) & 0xFFFF;
+        pos += 6;
+
+        checkRecord(index, pos, titleLength + (version >= 2 ? 2 : 0));
+        byte[] titleBytes = new byte[titleLength];
+        for (int i = 0; i < titleLength; i++) titleBytes[i] = data.get(pos + i);
+        pos += titleLength;
+
+        // Read the explicit portal links; a level without any pairs its portals in scan order.
+        int[] links = null;
+        if (version >= 2) {
+            int linkCount = data.getShort(pos) & 0xFFFF;
+            pos += 2;
+            if (linkCount > 0) {
+                checkRecord(index, pos, 8L * linkCount);
+                links = new int[linkCount * 4];
+                for (int i = 0; i < links.length; i++) {
+                    links[i] = data.getShort(pos + 2 * i) & 0xFFFF;
+                }
+                pos += 2 * links.length;
+            }
+        }
+
+        // Unpack two cells per byte.
+        checkRecord(index, pos, ((long) width * height + 1) / 2);
+        int[][] tiles = new int[height][width];
+        int cell = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int packed = data.get(pos + (cell >>> 1));
+                tiles[y][x] = (packed >>> ((cell & 1) << 2)) & 0xF;
+                cell++;
+            }
+        }
+        return new Level(new String(titleBytes, StandardCharsets.UTF_8), tiles, links);
+    }
+
+    /**
+     * Gets the title of a level by reading only the title from its record.
+     *
+     * @param index The index of the level.
+     * @return The level title.
+     * @throws IllegalArgumentException if the level does not exist or its record is truncated.
+     */
+    @Override
+    public String getTitle(int index) {
+        int pos = recordStart(index);
+        int titleLength = data.getShort(pos + 4) & 0xFFFF;
+        checkRecord(index, pos + 6, titleLength);
+        byte[] titleBytes = new byte[titleLength];
+        for (int i = 0; i < titleLength; i++) titleBytes[i] = data.get(pos + 6 + i);
+        return new String(titleBytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Looks up where the record of a level starts and checks that its fixed fields are in the file.
+     *
+     * @return The offset of the record.
+     * @throws IllegalArgumentException if the level does not exist or its offset is invalid.
+     */
+    private int recordStart(int index) {
+        if (index < 0 || index >= count) {
+            throw new IllegalArgumentException("Invalid level: " + index);
+        }
+        int pos = data.getInt(HEADER_SIZE + 4 * index);
+        if (pos < HEADER_SIZE + 4 * count) {
+            throw new IllegalArgumentException("Invalid offset of level " + index + ": " + pos);
+        }
+        checkRecord(index, pos, 6);
+        return pos;
+    }
+
+    /**
+     * Checks that a part of a level record lies within the file.
+     *
+     * @throws IllegalArgumentException if the file ends before the part does.
+     */
+    private void checkRecord(int index, int pos, long length) {
+        if (pos + length > data.limit()) {
+            throw new IllegalArgumentException("Truncated record of level " + index);
+        }
+    }
+
+    /**
+     * Writes all levels of a level source as a binary level pack.
+     *
+     * @param source The levels to write.
+     * @param out    The stream to write to.
+     * @throws IOException if writing fails.
+     * @throws IllegalArgumentException if a level is too large or contains a tile value above 15.
+     */
+    public static void write(LevelSource source, OutputStream out) throws IOException {
+        int levelCount = source.size();
+
+        // Encode the level records first so their offsets are known for the index.
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        DataOutputStream recordData = new DataOutputStream(records);
+        int[] offsets = new int[levelCount];
+        int base = HEADER_SIZE + 4 * levelCount;
+        for (int i = 0; i < levelCount; i++) {
+            offsets[i] = base + recordData.size();
+            writeLevel(source.getLevel(i), recordData);
+        }
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeInt(levelCount);
+        for (int offset : offsets) {
+            data.writeInt(offset);
+        }
+        records.writeTo(data);
+        data.flush();
+    }
+
+    /**
+     * Writes one level record.
+     */
+    private static void writeLevel(Level level, DataOutputStream out) throws IOException {
+        int width = level.getWidth();
+        int height = level.getHeight();
+        byte[] title = level.getTitle().getBytes(StandardCharsets.UTF_8);
+        if (width > 0xFFFF || height > 0xFFFF || title.length > 0xFFFF) {
+            throw new IllegalArgumentException("Level too large: " + level.getTitle());
+        }
+        out.writeShort(width);
+        out.writeShort(height);
+        out.writeShort(title.length);
+        out.write(title);
+
+        int[] links = level.getPortalLinks();
+        int linkCount = links == null ? 0 : links.length / 4;
+        out.writeShort(linkCount);
+        for (int i = 0; i < linkCount * 4; i++) {
+            out.writeShort(links[i]);
+        }
+
+        // Pack two cells per byte; ragged rows are padded with floor.
+        int[][] tiles = level.getTiles();
+        byte[] packed = new byte[(int) (((long) width * height + 1) >>> 1)];
+        int cell = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int tile = x < tiles[y].length ? tiles[y][x] : Board.FLOOR;
+                if (tile < 0 || tile > 0xF) {
+                    throw new IllegalArgumentException("Tile value out of range: " + tile);
+                }
+                packed[cell >>> 1] |= (byte) (tile << ((cell & 1) << 2));
+                cell++;
+            }
+        }
+        out.write(packed);
+    }
+
+    /**
+     * Converts levels into a binary level pack.
+     * Without an input file the built-in levels are converted.
+     *
+     * @param args The output file, optionally followed by an XSB or binary level pack to convert.
+     * @throws IOException if a file cannot be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: BinaryLevelPack <output" + EXTENSION + "> [input pack]");
+            return;
+        }
+        LevelSource source = args.length > 1 ? LevelSource.open(Paths.get(args[1])) : Game.builtInLevels();
+        Path output = Paths.get(args[0]);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output))) {
+            write(source, out);
+        }
+        System.out.println("Wrote " + source.size() + " levels (" + Files.size(output) + " bytes) to " + output);
+    }
+}
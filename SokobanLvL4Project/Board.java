@@ -0,0 +1,678 @@
+/**
+ * The Board class is the compact state engine behind the Game class.
+ * Every tile class (walls, lava, checkpoints, portals, boxes and coins) is stored as a flat
+ * bitset over packed cell indices (cell = y * width + x), so every rule check in a move is a
+ * constant-time bit test and moving, pushing and collecting coins allocate no objects.
+ */
+public class Board {
+
+    /**
+     * Tile values used by the level layouts and the game field.
+     */
+    public static final int FLOOR = 0;
+    public static final int WALL = 1;
+    public static final int PLAYER = 2;
+    public static final int BOX = 3;
+    public static final int CHECKPOINT = 4;
+    public static final int COIN = 5;
+    public static final int LAVA = 6;
+    public static final int PORTAL_PURPLE = 7;
+    public static final int PORTAL_GREEN = 8;
+
+    /**
+     * Combined tile values that only appear in level files, never on the game field.
+     */
+    public static final int BOX_ON_CHECKPOINT = 9;
+    public static final int PLAYER_ON_CHECKPOINT = 10;
+
+    /**
+     * Direction codes accepted by {@link #move(int)}.
+     */
+    public static final int UP = 0;
+    public static final int DOWN = 1;
+    public static final int LEFT = 2;
+    public static final int RIGHT = 3;
+
+    /**
+     * Horizontal and vertical offsets for each direction code.
+     */
+    static final int[] DX = {0, 0, -1, 1};
+    static final int[] DY = {-1, 1, 0, 0};
+
+    /**
+     * Results returned by {@link #move(int)}.
+     */
+    public static final int BLOCKED = 0; // Nothing changed.
+    public static final int MOVED = 1; // The player walked (possibly through a portal).
+    public static final int PUSHED = 2; // The player walked and pushed a box.
+    public static final int DIED = 3; // The player stepped into lava and the level was reset.
+    public static final int PORTAL_ERROR = 4; // The player's portal exit was blocked and the level was reset.
+
+    /**
+     * Returned by the portal lookup when the portal has no partner.
+     */
+    private static final int NO_EXIT = -1;
+
+    /**
+     * Returned by the portal lookup when the partner's exit tile is not free.
+     */
+    private static final int BLOCKED_EXIT = -2;
+
+    // Dimensions of the board in tiles.
+    private final int width;
+    private final int height;
+
+    // The static tile of every cell (floor, wall, checkpoint, lava or portal).
+    private final byte[] tiles;
+
+    // Bitsets of the static tile classes.
+    private final long[] walls;
+    private final long[] lava;
+    private final long[] checkpoints;
+    private final long[] portals;
+
+    // Bitsets of the dynamic objects.
+    private final long[] boxes;
+    private final long[] coins;
+
+    // Initial object positions used for resets.
+    private final long[] initialBoxes;
+    private final long[] initialCoins;
+    private final int startCell;
+
+    // Partner and precomputed exits of every portal.
+    private final PortalTable portalTable;
+
+    // Current player cell.
+    private int player;
+
+    // Zobrist hash of the dynamic state (player cell, box set and remaining coins).
+    private long hash;
+
+    // Number of boxes and number of boxes currently resting on a checkpoint.
+    private final int boxCount;
+    private int boxesOnCheckpoints;
+
+    // Cells touched by the last call to move (or -1 if unused).
+    private int lastFrom = -1;
+    private int lastTo = -1;
+    private int lastBoxFrom = -1;
+    private int lastBoxTo = -1;
+    private int lastCoin = -1;
+
+    /**
+     * Builds a board from a level layout. Portals are paired in scan order: the n-th purple portal
+     * with the n-th green portal.
+     *
+     * @param layout The level layout, indexed as layout[y][x].
+     * @throws IllegalArgumentException if the layout contains no player.
+     */
+    public Board(int[][] layout) {
+        this(layout, null);
+    }
+
+    /**
+     * Builds a board from a level layout with explicit portal pairs.
+     *
+     * @param layout      The level layout, indexed as layout[y][x].
+     * @param portalLinks The portal pairs as coordinates [x1, y1, x2, y2, ...], or null to pair
+     *                    portals in scan order.
+     * @throws IllegalArgumentException if the layout contains no player or a link is invalid.
+     */
+    public Board(int[][] layout, int[] portalLinks) {
+        this.height = layout.length;
+        this.width = layout[0].length;
+        int cells = width * height;
+        int words = (cells + 63) >>> 6;
+
+        tiles = new byte[cells];
+        walls = new long[words];
+        lava = new long[words];
+        checkpoints = new long[words];
+        portals = new long[words];
+        boxes = new long[words];
+        coins = new long[words];
+
+        int start = -1;
+        int boxTotal = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int cell = y * width + x;
+                int tile = layout[y][x];
+                switch (tile) {
+                    case WALL:
+                        set(walls, cell);
+                        tiles[cell] = WALL;
+                        break;
+                    case PLAYER:
+                        if (start < 0) start = cell; // The first player tile in scan order wins.
+                        break;
+                    case BOX:
+                        set(boxes, cell);
+                        boxTotal++;
+                        break;
+                    case BOX_ON_CHECKPOINT:
+                        set(boxes, cell);
+                        boxTotal++;
+                        set(checkpoints, cell);
+                        tiles[cell] = CHECKPOINT;
+                        break;
+                    case PLAYER_ON_CHECKPOINT:
+                        if (start < 0) start = cell;
+                        set(checkpoints, cell);
+                        tiles[cell] = CHECKPOINT;
+                        break;
+                    case CHECKPOINT:
+                        set(checkpoints, cell);
+                        tiles[cell] = CHECKPOINT;
+                        break;
+                    case COIN:
+                        set(coins, cell);
+                        break;
+                    case LAVA:
+                        set(lava, cell);
+                        tiles[cell] = LAVA;
+                        break;
+                    case PORTAL_PURPLE:
+                        set(portals, cell);
+                        tiles[cell] = PORTAL_PURPLE;
+                        break;
+                    case PORTAL_GREEN:
+                        set(portals, cell);
+                        tiles[cell] = PORTAL_GREEN;
+                        break;
+                    default:
+                        break; // Floor and unknown values stay floor.
+                }
+            }
+        }
+        if (start < 0) {
+            throw new IllegalArgumentException("Level has no player tile");
+        }
+
+        // Link the portals once, so traversal is a table lookup.
+        int[] pairs = null;
+        if (portalLinks != null) {
+            pairs = new int[portalLinks.length / 2];
+            for (int i = 0; i < pairs.length; i++) {
+                int x = portalLinks[2 * i];
+                int y = portalLinks[2 * i + 1];
+                if (x < 0 || x >= width || y < 0 || y >= height) {
+                    throw new IllegalArgumentException("Portal link outside the level: " + x + "," + y);
+                }
+                pairs[i] = y * width + x;
+            }
+        }
+        portalTable = new PortalTable(tiles, width, height, pairs);
+
+        startCell = start;
+        player = start;
+        boxCount = boxTotal;
+        boxesOnCheckpoints = countBoxesOnCheckpoints();
+        initialBoxes = boxes.clone();
+        initialCoins = coins.clone();
+        hash = computeHash();
+    }
+
+    /**
+     * Moves the player one tile in the given direction, applying the full game rules:
+     * walls block, boxes are pushed (possibly through a portal), lava resets the level,
+     * portals teleport the player and coins are collected.
+     *
+     * @param dir One of {@link #UP}, {@link #DOWN}, {@link #LEFT} or {@link #RIGHT}.
+     * @return One of {@link #BLOCKED}, {@link #MOVED}, {@link #PUSHED}, {@link #DIED} or {@link #PORTAL_ERROR}.
+     */
+    public int move(int dir) {
+        lastFrom = player;
+        lastTo = -1;
+        lastBoxFrom = -1;
+        lastBoxTo = -1;
+        lastCoin = -1;
+
+        // Calculate the target cell and make sure it is on the board and not a wall.
+        int next = neighbor(player, dir);
+        if (next < 0 || get(walls, next)) return BLOCKED;
+
+        // Handle interaction with boxes.
+        int result = MOVED;
+        if (get(boxes, next)) {
+            if (!pushBox(next, dir)) return BLOCKED;
+            result = PUSHED;
+        }
+
+        // Stepping into lava resets the level.
+        if (get(lava, next)) {
+            resetAfterDeath();
+            return DIED;
+        }
+
+        // Handle interaction with portals. The player has already left its cell at this point.
+        int dest = next;
+        if (get(portals, next)) {
+            int exit = portalExit(next, dir, -1);
+            if (exit == BLOCKED_EXIT) {
+                resetAfterDeath();
+                return PORTAL_ERROR;
+            }
+            if (exit >= 0) dest = exit; // Without a partner the player stands on the portal.
+        }
+
+        // Move the player and collect a coin if there is one.
+        hash ^= Zobrist.player(player) ^ Zobrist.player(dest);
+        player = dest;
+        lastTo = dest;
+        if (get(coins, dest)) {
+            clear(coins, dest);
+            hash ^= Zobrist.coin(dest);
+            lastCoin = dest;
+        }
+        return result;
+    }
+
+    /**
+     * Pushes the box at the given cell one tile in the given direction.
+     *
+     * @param boxCell The cell of the box.
+     * @param dir     The push direction.
+     * @return True if the box moved; otherwise false and nothing changed.
+     */
+    private boolean pushBox(int boxCell, int dir) {
+        // Boxes cannot be pushed off the board or into walls, lava or other boxes.
+        int target = neighbor(boxCell, dir);
+        if (target < 0 || get(walls, target) || get(lava, target) || get(boxes, target)) return false;
+
+        // Boxes entering a portal leave through the partner; a blocked or missing exit refuses the push.
+        if (get(portals, target)) {
+            target = portalExit(target, dir, player);
+            if (target < 0) return false;
+        }
+
+        // Move the box and keep the checkpoint counter up to date.
+        moveBox(boxCell, target);
+        lastBoxFrom = boxCell;
+        lastBoxTo = target;
+        return true;
+    }
+
+    /**
+     * Reverts a move recorded as a delta: the box (if any) goes back, the coin (if any) is put back
+     * and the player returns to its start cell. The last-move cells describe the reverted move.
+     *
+     * @param playerFrom The cell the player left in the move.
+     * @param playerTo   The cell the player arrived on in the move.
+     * @param boxFrom    The cell the box left, or -1 if no box moved.
+     * @param boxTo      The cell the box arrived on, or -1 if no box moved.
+     * @param coin       Whether the move collected a coin on playerTo.
+     */
+    public void undoMove(int playerFrom, int playerTo, int boxFrom, int boxTo, boolean coin) {
+        if (boxFrom >= 0) moveBox(boxTo, boxFrom);
+        if (coin) {
+            set(coins, playerTo);
+            hash ^= Zobrist.coin(playerTo);
+        }
+        movePlayer(playerTo, playerFrom, boxTo, boxFrom, coin ? playerTo : -1);
+    }
+
+    /**
+     * Applies a move recorded as a delta again, without re-running the rules.
+     *
+     * @param playerFrom The cell the player left in the move.
+     * @param playerTo   The cell the player arrived on in the move.
+     * @param boxFrom    The cell the box left, or -1 if no box moved.
+     * @param boxTo      The cell the box arrived on, or -1 if no box moved.
+     * @param coin       Whether the move collected a coin on playerTo.
+     */
+    public void redoMove(int playerFrom, int playerTo, int boxFrom, int boxTo, boolean coin) {
+        if (boxFrom >= 0) moveBox(boxFrom, boxTo);
+        if (coin) {
+            clear(coins, playerTo);
+            hash ^= Zobrist.coin(playerTo);
+        }
+        movePlayer(playerFrom, playerTo, boxFrom, boxTo, coin ? playerTo : -1);
+    }
+
+    /**
+     * Moves a box between two cells, updating the checkpoint counter and the hash.
+     */
+    private void moveBox(int from, int to) {
+        clear(boxes, from);
+        set(boxes, to);
+        hash ^= Zobrist.box(from) ^ Zobrist.box(to);
+        if (get(checkpoints, from)) boxesOnCheckpoints--;
+        if (get(checkpoints, to)) boxesOnCheckpoints++;
+    }
+
+    /**
+     * Moves the player between two cells and records the touched cells as the last move.
+     */
+    private void movePlayer(int from, int to, int boxFrom, int boxTo, int coin) {
+        hash ^= Zobrist.player(from) ^ Zobrist.player(to);
+        player = to;
+        lastFrom = from;
+        lastTo = to;
+        lastBoxFrom = boxFrom;
+        lastBoxTo = boxTo;
+        lastCoin = coin;
+    }
+
+    /**
+     * Determines the exit cell of a portal. The exit is the tile next to the partner portal
+     * in the direction of travel.
+     *
+     * @param portalCell The cell of the portal being entered.
+     * @param dir        The direction of travel.
+     * @param occupied   A cell that counts as occupied (the player when a box travels), or -1.
+     * @return The exit cell, {@link #NO_EXIT} if the portal has no partner, or {@link #BLOCKED_EXIT}.
+     */
+    private int portalExit(int portalCell, int dir, int occupied) {
+        // The exit must be a floor tile, which the table has already checked, with nothing on it.
+        int exit = portalTable.exit(portalCell, dir);
+        if (exit < 0) {
+            return portalTable.partner(portalCell) < 0 ? NO_EXIT : BLOCKED_EXIT;
+        }
+        if (exit == occupied || get(boxes, exit) || get(coins, exit)) return BLOCKED_EXIT;
+        return exit;
+    }
+
+    /**
+     * Returns the portal paired with the given portal.
+     *
+     * @param portalCell The cell of a portal.
+     * @return The cell of the partner portal, or -1 if the portal has no partner.
+     */
+    public int portalPartner(int portalCell) {
+        return portalTable.partner(portalCell);
+    }
+
+    /**
+     * Returns the tile a traveller entering a portal comes out on, ignoring boxes and coins.
+     *
+     * @param portalCell The cell of the portal being entered.
+     * @param dir        The direction of travel.
+     * @return The exit cell, or -1 if the portal has no partner or the exit is not a floor tile.
+     */
+    public int portalExitCell(int portalCell, int dir) {
+        return portalTable.exit(portalCell, dir);
+    }
+
+    /**
+     * Checks whether a cell is plain floor with no player, box or coin on it.
+     *
+     * @param cell The cell to check.
+     * @return True if the cell is free.
+     */
+    public boolean isFree(int cell) {
+        return tiles[cell] == FLOOR && cell != player && !get(boxes, cell) && !get(coins, cell);
+    }
+
+    /**
+     * Resets the boxes and the player to their initial positions. Collected coins stay collected.
+     */
+    public void resetAfterDeath() {
+        System.arraycopy(initialBoxes, 0, boxes, 0, boxes.length);
+        boxesOnCheckpoints = countBoxesOnCheckpoints();
+        player = startCell;
+        hash = computeHash();
+    }
+
+    /**
+     * Resets the boxes, the coins and the player to their initial positions.
+     */
+    public void reset() {
+        System.arraycopy(initialCoins, 0, coins, 0, coins.length);
+        resetAfterDeath();
+    }
+
+    /**
+     * Gets the number of longs needed to store the dynamic state with {@link #saveState(long[])}.
+     *
+     * @return The state size in longs.
+     */
+    public int stateSize() {
+        return 1 + 2 * boxes.length;
+    }
+
+    /**
+     * Copies the dynamic state (player, boxes and coins) into an array.
+     * The layout is [player, box words..., coin words...].
+     *
+     * @param dst The destination array of at least {@link #stateSize()} longs.
+     */
+    public void saveState(long[] dst) {
+        dst[0] = player;
+        System.arraycopy(boxes, 0, dst, 1, boxes.length);
+        System.arraycopy(coins, 0, dst, 1 + boxes.length, coins.length);
+    }
+
+    /**
+     * Restores a dynamic state previously written by {@link #saveState(long[])}.
+     *
+     * @param src The source array.
+     */
+    public void loadState(long[] src) {
+        player = (int) src[0];
+        System.arraycopy(src, 1, boxes, 0, boxes.length);
+        System.arraycopy(src, 1 + boxes.length, coins, 0, coins.length);
+        boxesOnCheckpoints = countBoxesOnCheckpoints();
+        hash = computeHash();
+    }
+
+    /**
+     * Checks whether every box rests on a checkpoint.
+     *
+     * @return True if the level is solved.
+     */
+    public boolean isSolved() {
+        return boxesOnCheckpoints == boxCount;
+    }
+
+    /**
+     * Returns the tile value to display for a cell, with the player, boxes and coins
+     * drawn on top of the static tile.
+     *
+     * @param cell The cell to look up.
+     * @return The tile value of the cell.
+     */
+    public int displayTile(int cell) {
+        if (cell == player) return PLAYER;
+        if (get(boxes, cell)) return BOX;
+        if (get(coins, cell)) return COIN;
+        return tiles[cell];
+    }
+
+    /**
+     * Returns the cell next to the given cell in a direction.
+     *
+     * @param cell The starting cell.
+     * @param dir  The direction.
+     * @return The neighbouring cell, or -1 if it lies outside the board.
+     */
+    public int neighbor(int cell, int dir) {
+        int x = cell % width + DX[dir];
+        int y = cell / width + DY[dir];
+        if (x < 0 || x >= width || y < 0 || y >= height) return -1;
+        return y * width + x;
+    }
+
+    /**
+     * Counts the boxes resting on checkpoints.
+     *
+     * @return The number of boxes on checkpoints.
+     */
+    private int countBoxesOnCheckpoints() {
+        int count = 0;
+        for (int i = 0; i < boxes.length; i++) {
+            count += Long.bitCount(boxes[i] & checkpoints[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Computes the Zobrist hash of the current state from scratch.
+     *
+     * @return The hash.
+     */
+    private long computeHash() {
+        long h = Zobrist.player(player);
+        for (int w = 0; w < boxes.length; w++) {
+            for (long bits = boxes[w]; bits != 0; bits &= bits - 1) {
+                h ^= Zobrist.box((w << 6) + Long.numberOfTrailingZeros(bits));
+            }
+            for (long bits = coins[w]; bits != 0; bits &= bits - 1) {
+                h ^= Zobrist.coin((w << 6) + Long.numberOfTrailingZeros(bits));
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Gets the Zobrist hash of the current state (player cell, box set and remaining coins).
+     * It is updated incrementally by every move.
+     *
+     * @return The hash.
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Tests a bit in a bitset.
+     */
+    static boolean get(long[] bits, int cell) {
+        return (bits[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Sets a bit in a bitset.
+     */
+    static void set(long[] bits, int cell) {
+        bits[cell >>> 6] |= 1L << cell;
+    }
+
+    /**
+     * Clears a bit in a bitset.
+     */
+    static void clear(long[] bits, int cell) {
+        bits[cell >>> 6] &= ~(1L << cell);
+    }
+
+    /**
+     * Checks whether a cell contains a box.
+     *
+     * @param cell The cell to check.
+     * @return True if a box is on the cell.
+     */
+    public boolean hasBox(int cell) {
+        return get(boxes, cell);
+    }
+
+    /**
+     * Checks whether a cell contains an uncollected coin.
+     *
+     * @param cell The cell to check.
+     * @return True if a coin is on the cell.
+     */
+    public boolean hasCoin(int cell) {
+        return get(coins, cell);
+    }
+
+    /**
+     * Finds the next cell holding a box or an uncollected coin by scanning the bitsets a word at a time.
+     *
+     * @param fromCell The first cell to look at.
+     * @return The first cell at or after fromCell with a box or coin, or -1 if there is none.
+     */
+    public int nextObject(int fromCell) {
+        if (fromCell < 0) fromCell = 0;
+        int word = fromCell >>> 6;
+        if (word >= boxes.length) return -1;
+        long bits = (boxes[word] | coins[word]) & (-1L << fromCell);
+        while (bits == 0) {
+            if (++word == boxes.length) return -1;
+            bits = boxes[word] | coins[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * Returns the static tile of a cell (floor, wall, checkpoint, lava or portal).
+     *
+     * @param cell The cell to look up.
+     * @return The static tile value.
+     */
+    public int staticTile(int cell) {
+        return tiles[cell];
+    }
+
+    /**
+     * Gets the width of the board in tiles.
+     *
+     * @return The width.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height of the board in tiles.
+     *
+     * @return The height.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the cell the player is standing on.
+     *
+     * @return The player cell.
+     */
+    public int getPlayer() {
+        return player;
+    }
+
+    /**
+     * Gets the cell the player left during the last move.
+     *
+     * @return The cell, or -1.
+     */
+    public int getLastFrom() {
+        return lastFrom;
+    }
+
+    /**
+     * Gets the cell the player arrived on during the last move.
+     *
+     * @return The cell, or -1 if the player did not arrive anywhere.
+     */
+    public int getLastTo() {
+        return lastTo;
+    }
+
+    /**
+     * Gets the cell a box was pushed from during the last move.
+     *
+     * @return The cell, or -1 if no box moved.
+     */
+    public int getLastBoxFrom() {
+        return lastBoxFrom;
+    }
+
+    /**
+     * Gets the cell a box was pushed to during the last move.
+     *
+     * @return The cell, or -1 if no box moved.
+     */
+    public int getLastBoxTo() {
+        return lastBoxTo;
+    }
+
+    /**
+     * Gets the cell a coin was collected on during the last move.
+     *
+     * @return The cell, or -1 if no coin was collected.
+     */
+    public int getLastCoin() {
+        return lastCoin;
+    }
+}
@@ -0,0 +1,228 @@
+/**
+ * The BoardBfs class runs breadth-first searches over the packed cells of a board without
+ * allocating: the queue and the visited marks are allocated once per board and reused by every
+ * search. Visited marks are stamped with a search number, so starting a new search never has to
+ * clear them.
+ *
+ * A BoardBfs belongs to one board and is not thread-safe; every thread needs its own.
+ */
+import java.util.Arrays;
+
+public class BoardBfs {
+
+    // The board being searched.
+    private final Board board;
+
+    // Number of cells on the board.
+    private final int cells;
+
+    // The search queue; after a search it holds every reached cell in the order it was reached.
+    private final int[] queue;
+    private int reached;
+
+    // Cells whose mark equals the current epoch were reached by the current search.
+    private final int[] marks;
+    private int epoch;
+
+    // Reverse push graph, grouped by landing cell: the box cells pushable onto cell c are
+    // pushSources[pushStart[c]] .. pushSources[pushStart[c + 1] - 1]. Built on first use.
+    private int[] pushStart;
+    private int[] pushSources;
+
+    /**
+     * Constructor for the BoardBfs class.
+     *
+     * @param board The board to search.
+     */
+    public BoardBfs(Board board) {
+        this.board = board;
+        this.cells = board.getWidth() * board.getHeight();
+        this.queue = new int[cells];
+        this.marks = new int[cells];
+    }
+
+    /**
+     * Starts a new search: all cells become unvisited.
+     */
+    private void begin() {
+        reached = 0;
+        if (++epoch == 0) {
+            // The stamps wrapped around; old marks could be mistaken for new ones.
+            Arrays.fill(marks, 0);
+            epoch = 1;
+        }
+    }
+
+    /**
+     * Marks a cell as reached and queues it, unless it was reached before.
+     */
+    private void visit(int cell) {
+        if (marks[cell] != epoch) {
+            marks[cell] = epoch;
+            queue[reached++] = cell;
+        }
+    }
+
+    /**
+     * Finds the free cell (plain floor without the player, a box or a coin, see
+     * {@link Board#isFree(int)}) closest to a start cell, counting steps in the four directions
+     * across any tile.
+     *
+     * @param start   The start cell.
+     * @param maxDist The maximum number of steps from the start.
+     * @return The nearest free cell, or -1 if there is none within the distance.
+     */
+    public int nearestFreeCell(int start, int maxDist) {
+        begin();
+        visit(start);
+        int head = 0;
+        for (int distance = 0; distance <= maxDist && head < reached; distance++) {
+            // Expand one ring of cells at a time so the distance is known.
+            int ringEnd = reached;
+            while (head < ringEnd) {
+                int cell = queue[head++];
+                if (board.isFree(cell)) return cell;
+                for (int dir = 0; dir < 4; dir++) {
+                    int next = board.neighbor(cell, dir);
+                    if (next >= 0) visit(next);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds every cell the player can walk to from its current cell without pushing a box.
+     *
+     * @return The number of reachable cells, including the player's own.
+     * @see #reach(int)
+     */
+    public int reachPlayer() {
+        return reach(board.getPlayer());
+    }
+
+    /**
+     * Finds every cell the player could walk to from a start cell without pushing a box.
+     * Walls, lava and boxes stop the player; coins do not. Portals are followed the way
+     * {@link Board#move(int)} follows them, and a portal whose exit is blocked is not entered.
+     * Query the result with {@link #isReached(int)}, {@link #getReachedCount()} and
+     * {@link #getReachedCell(int)}.
+     *
+     * @param start The start cell.
+     * @return The number of reachable cells, including the start cell.
+     */
+    public int reach(int start) {
+        begin();
+        visit(start);
+        int head = 0;
+        while (head < reached) {
+            int cell = queue[head++];
+            for (int dir = 0; dir < 4; dir++) {
+                int next = board.neighbor(cell, dir);
+                if (next < 0 || board.hasBox(next)) continue;
+                int tile = board.staticTile(next);
+                if (tile == Board.WALL || tile == Board.LAVA) continue;
+                if (tile == Board.PORTAL_PURPLE || tile == Board.PORTAL_GREEN) {
+                    int exit = board.portalExitCell(next, dir);
+                    if (exit >= 0) {
+                        // The exit must be clear; otherwise entering the portal is fatal.
+                        if (!board.hasBox(exit) && !board.hasCoin(exit)) visit(exit);
+                        continue;
+                    }
+                    // Without a partner the player stays on the portal.
+                    if (board.portalPartner(next) >= 0) continue;
+                }
+                visit(next);
+            }
+        }
+        return reached;
+    }
+
+    /**
+     * Checks whether the last search reached a cell.
+     *
+     * @param cell The cell to check.
+     * @return True if the cell was reached.
+     */
+    public boolean isReached(int cell) {
+        return marks[cell] == epoch;
+    }
+
+    /**
+     * Gets the number of cells reached by the last search.
+     *
+     * @return The number of reached cells.
+     */
+    public int getReachedCount() {
+        return reached;
+    }
+
+    /**
+     * Gets a cell reached by the last search, in the order the cells were reached.
+     *
+     * @param i The index of the cell, below {@link #getReachedCount()}.
+     * @return The cell.
+     */
+    public int getReachedCell(int i) {
+        return queue[i];
+    }
+
+    /**
+     * Computes, for every cell, the minimum number of pushes needed to bring a box from that cell
+     * onto any checkpoint, ignoring the other boxes. Pushes through portals are taken into account.
+     *
+     * @param dist Receives the push distance per cell, or {@link Solver#UNREACHABLE}; must hold
+     *             one entry per cell.
+     */
+    public void pushDistances(int[] dist) {
+        if (pushStart == null) buildPushGraph();
+
+        // Breadth-first search backwards from all checkpoints.
+        Arrays.fill(dist, 0, cells, Solver.UNREACHABLE);
+        begin();
+        for (int cell = 0; cell < cells; cell++) {
+            if (board.staticTile(cell) == Board.CHECKPOINT) {
+                dist[cell] = 0;
+                visit(cell);
+            }
+        }
+        int head = 0;
+        while (head < reached) {
+            int cell = queue[head++];
+            for (int i = pushStart[cell]; i < pushStart[cell + 1]; i++) {
+                int src = pushSources[i];
+                if (marks[src] != epoch) {
+                    dist[src] = dist[cell] + 1;
+                    visit(src);
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects every possible single push, looking only at static tiles, grouped by landing cell.
+     */
+    private void buildPushGraph() {
+        // Count the pushes landing on each cell.
+        int[] start = new int[cells + 1];
+        for (int cell = 0; cell < cells; cell++) {
+            for (int dir = 0; dir < 4; dir++) {
+                int target = Solver.pushTarget(board, cell, dir);
+                if (target >= 0) start[target + 1]++;
+            }
+        }
+        for (int c = 0; c < cells; c++) start[c + 1] += start[c];
+
+        // Fill in the box cell of every push.
+        int[] sources = new int[start[cells]];
+        int[] fill = Arrays.copyOf(start, cells);
+        for (int cell = 0; cell < cells; cell++) {
+            for (int dir = 0; dir < 4; dir++) {
+                int target = Solver.pushTarget(board, cell, dir);
+                if (target >= 0) sources[fill[target]++] = cell;
+            }
+        }
+        pushStart = start;
+        pushSources = sources;
+    }
+}
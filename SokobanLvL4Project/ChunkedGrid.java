@@ -0,0 +1,211 @@
+/**
+ * The ChunkedGrid class stores a grid of int values in square chunks of
+ * {@link #CHUNK_SIZE} x {@link #CHUNK_SIZE} cells.
+ *
+ * Chunks whose cells all hold the same value share one array, so large empty or walled areas
+ * take almost no memory. A grid can be derived from another with {@link #copyOnWrite()}: the copy
+ * shares every chunk with its base and only copies a chunk when one of its cells is written.
+ * The chunks written since then are tracked, so bringing the copy back in line with its source
+ * ({@link #refreshTouched(IntUnaryOperator)}) costs time in proportion to what changed rather than
+ * to the size of the grid.
+ *
+ * A grid that is never written after it was built may be read from any number of threads.
+ */
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+
+public class ChunkedGrid {
+
+    /**
+     * log2 of the chunk size.
+     */
+    public static final int CHUNK_BITS = 5;
+
+    /**
+     * The width and height of a chunk in cells.
+     */
+    public static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    // Mask selecting the position of a cell inside its chunk.
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // Dimensions of the grid in cells and in chunks.
+    private final int width;
+    private final int height;
+    private final int chunksX;
+    private final int chunksY;
+
+    // The cells of each chunk (cy * chunksX + cx), stored as y * CHUNK_SIZE + x within the chunk.
+    private final int[][] chunks;
+
+    // The grid this one was copied from, or null for a grid built from scratch.
+    private final ChunkedGrid base;
+
+    // Chunks copied by this grid, which it may write to, as a bitset and as a list.
+    private final long[] owned;
+    private int[] touched = new int[16];
+    private int touchedCount;
+
+    // Copies released by refreshTouched, reused by the next chunks written.
+    private int[][] spare = new int[16][];
+    private int spareCount;
+
+    /**
+     * Builds a grid from a function of the packed cell index.
+     *
+     * @param width  The width in cells.
+     * @param height The height in cells.
+     * @param values The value of each cell, given its packed index (y * width + x).
+     */
+    public ChunkedGrid(int width, int height, IntUnaryOperator values) {
+        this(width, height, (ChunkedGrid) null);
+        Map<Integer, int[]> uniform = new HashMap<>();
+        int[] buffer = new int[CHUNK_SIZE * CHUNK_SIZE];
+        for (int chunk = 0; chunk < chunks.length; chunk++) {
+            fill(chunk, buffer, values);
+
+            // Share chunks holding a single value.
+            boolean same = true;
+            for (int i = 1; i < buffer.length && same; i++) same = buffer[i] == buffer[0];
+            chunks[chunk] = same ? uniform.computeIfAbsent(buffer[0], v -> buffer.clone()) : buffer.clone();
+        }
+    }
+
+    /**
+     * Creates an empty grid of the given size.
+     */
+    private ChunkedGrid(int width, int height, ChunkedGrid base) {
+        this.width = width;
+        this.height = height;
+        this.chunksX = (width + CHUNK_MASK) >> CHUNK_BITS;
+        this.chunksY = (height + CHUNK_MASK) >> CHUNK_BITS;
+        this.chunks = new int[chunksX * chunksY][];
+        this.base = base;
+        this.owned = new long[(chunks.length + 63) >>> 6];
+    }
+
+    /**
+     * Creates a grid that shares all chunks with this one until they are written.
+     * This grid must not be written afterwards.
+     *
+     * @return The copy.
+     */
+    public ChunkedGrid copyOnWrite() {
+        ChunkedGrid copy = new ChunkedGrid(width, height, this);
+        System.arraycopy(chunks, 0, copy.chunks, 0, chunks.length);
+        return copy;
+    }
+
+    /**
+     * Gets the value of a cell.
+     *
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @return The value.
+     */
+    public int get(int x, int y) {
+        return chunks[(y >> CHUNK_BITS) * chunksX + (x >> CHUNK_BITS)][((y & CHUNK_MASK) << CHUNK_BITS) | (x & CHUNK_MASK)];
+    }
+
+    /**
+     * Sets the value of a cell, copying its chunk first if it is still shared.
+     *
+     * @param x     The x-coordinate.
+     * @param y     The y-coordinate.
+     * @param value The new value.
+     */
+    public void set(int x, int y, int value) {
+        int chunk = (y >> CHUNK_BITS) * chunksX + (x >> CHUNK_BITS);
+        int index = ((y & CHUNK_MASK) << CHUNK_BITS) | (x & CHUNK_MASK);
+        if (chunks[chunk][index] == value) return;
+        own(chunk)[index] = value;
+    }
+
+    /**
+     * Makes a chunk private to this grid, copying it if necessary.
+     *
+     * @return The chunk's cells.
+     */
+    private int[] own(int chunk) {
+        if ((owned[chunk >>> 6] & (1L << chunk)) == 0) {
+            owned[chunk >>> 6] |= 1L << chunk;
+            int[] copy = spareCount > 0 ? spare[--spareCount] : new int[CHUNK_SIZE * CHUNK_SIZE];
+            System.arraycopy(chunks[chunk], 0, copy, 0, copy.length);
+            chunks[chunk] = copy;
+            if (touchedCount == touched.length) touched = Arrays.copyOf(touched, touchedCount * 2);
+            touched[touchedCount++] = chunk;
+        }
+        return chunks[chunk];
+    }
+
+    /**
+     * Recomputes the chunks written since this grid was copied. Chunks that end up equal to the
+     * base grid's are shared with it again. Cells outside those chunks are assumed unchanged.
+     *
+     * @param values The value of each cell, given its packed index (y * width + x).
+     * @return The number of chunks recomputed.
+     */
+    public int refreshTouched(IntUnaryOperator values) {
+        int count = touchedCount;
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int chunk = touched[i];
+            int[] cells = chunks[chunk];
+            fill(chunk, cells, values);
+            if (base != null && Arrays.equals(cells, base.chunks[chunk])) {
+                // Back to the base state; share the base chunk again and keep the copy for reuse.
+                if (spareCount == spare.length) spare = Arrays.copyOf(spare, spareCount * 2);
+                spare[spareCount++] = cells;
+                chunks[chunk] = base.chunks[chunk];
+                owned[chunk >>> 6] &= ~(1L << chunk);
+            } else {
+                touched[kept++] = chunk;
+            }
+        }
+        touchedCount = kept;
+        return count;
+    }
+
+    /**
+     * Fills the cells of a chunk from a function; cells outside the grid get 0.
+     */
+    private void fill(int chunk, int[] cells, IntUnaryOperator values) {
+        int x0 = (chunk % chunksX) << CHUNK_BITS;
+        int y0 = (chunk / chunksX) << CHUNK_BITS;
+        Arrays.fill(cells, 0);
+        for (int y = y0; y < Math.min(height, y0 + CHUNK_SIZE); y++) {
+            for (int x = x0; x < Math.min(width, x0 + CHUNK_SIZE); x++) {
+                cells[((y - y0) << CHUNK_BITS) | (x - x0)] = values.applyAsInt(y * width + x);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of chunks this grid holds its own copy of.
+     *
+     * @return The number of copied chunks.
+     */
+    public int getTouchedChunkCount() {
+        return touchedCount;
+    }
+
+    /**
+     * Gets the width of the grid.
+     *
+     * @return The width in cells.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height of the grid.
+     *
+     * @return The height in cells.
+     */
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,356 @@
+/**
+ * The CorralSearch class decides whether the boxes of a corral can ever all be pushed onto
+ * checkpoints once every other box and all coins are removed. It backs the corral deadlock check
+ * of {@link DeadlockDetector}.
+ *
+ * The search only looks at a window around the corral, so its cost does not grow with the board.
+ * Everything outside the window counts as one open area the player can cross freely, and a box
+ * pushed to the edge of the window ends the search as solvable. Both only make the search more
+ * optimistic, so a corral it reports as lost really is lost. Like {@link BoardBfs}, it allocates
+ * its queues and marks once and reuses them, stamping marks with a search number instead of
+ * clearing them.
+ *
+ * A CorralSearch belongs to one board and is not thread-safe.
+ */
+import java.util.Arrays;
+
+class CorralSearch {
+
+    /**
+     * Cells added around the corral's bounding box to form the window: room for the player to walk
+     * around the corral and for its boxes to be pushed a few cells out of it.
+     */
+    private static final int MARGIN = 4;
+
+    /**
+     * Number of cells the player reach may visit, summed over the whole search, before it gives up.
+     */
+    private static final int MAX_WORK = 1 << 14;
+
+    // The board, and the dead squares of its level as a bitset.
+    private final Board board;
+    private final long[] dead;
+
+    // The window, in board coordinates.
+    private int x0;
+    private int y0;
+    private int windowWidth;
+    private int windowHeight;
+
+    // Walkable window cells the player can enter from outside the window: cells next to the
+    // outside and cells next to a portal, where a portal from anywhere may let the player out.
+    private int[] entries = new int[64];
+    private int entryCount;
+
+    // The player reach of the current position; marks are indexed by window cell and stamped.
+    private int[] reachQueue = new int[64];
+    private int reached;
+    private int[] marks = new int[64];
+    private int epoch;
+
+    // The positions to search, stride ints each: the player cell (-1 outside the window), then the boxes.
+    private int[] states = new int[256];
+    private int stride;
+    private int head;
+    private int tail;
+
+    // Hashes of the positions already searched, open-addressed; a slot is used if its stamp is current.
+    private final long[] seenKeys = new long[2 * MAX_WORK];
+    private final int[] seenStamps = new int[2 * MAX_WORK];
+    private int search;
+
+    /**
+     * Constructor for the CorralSearch class.
+     *
+     * @param board The board whose corrals are searched.
+     * @param dead  The dead squares of the board's level, as a bitset.
+     */
+    CorralSearch(Board board, long[] dead) {
+        this.board = board;
+        this.dead = dead;
+    }
+
+    /**
+     * Searches the pushes of the corral's boxes, starting from the board's player cell, for a
+     * position with all of them on checkpoints.
+     *
+     * @param corral The cells of the corral, boxes included.
+     * @param size   The number of cells.
+     * @return True if such a position was found or the search gave up, false if there is none.
+     */
+    boolean canPlaceBoxes(int[] corral, int size) {
+        // Frame the corral and collect its boxes into the first position.
+        int width = board.getWidth();
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = -1;
+        int maxY = -1;
+        int boxes = 0;
+        for (int i = 0; i < size; i++) {
+            int x = corral[i] % width;
+            int y = corral[i] / width;
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+            if (board.hasBox(corral[i])) boxes++;
+        }
+        setWindow(minX, minY, maxX, maxY);
+        stride = 1 + boxes;
+        head = 0;
+        tail = 0;
+        ensureStates(1);
+        int player = board.getPlayer();
+        states[0] = inWindow(player) ? player : -1;
+        for (int i = 0, b = 1; i < size; i++) {
+            if (board.hasBox(corral[i])) states[b++] = corral[i];
+        }
+        tail = 1;
+
+        if (++search == 0) {
+            // The stamps wrapped around; old entries could be mistaken for new ones.
+            Arrays.fill(seenStamps, 0);
+            search = 1;
+        }
+        long work = 0;
+        while (head < tail) {
+            int base = head++ * stride;
+            reach(base);
+            if ((work += reached + 1) > MAX_WORK) return true;
+
+            // Positions that differ only in where the player stands within its area are the same.
+            int area = Integer.MAX_VALUE;
+            for (int i = 0; i < reached; i++) area = Math.min(area, reachQueue[i]);
+            long key = Zobrist.player(area == Integer.MAX_VALUE ? 0 : area);
+            for (int b = 1; b < stride; b++) key ^= Zobrist.box(states[base + b]);
+            if (!addSeen(key)) continue;
+
+            // Try every push the player can walk up to.
+            for (int i = 0; i < reached; i++) {
+                int cell = reachQueue[i];
+                for (int dir = 0; dir < 4; dir++) {
+                    int boxCell = board.neighbor(cell, dir);
+                    int box = boxIndex(base, boxCell);
+                    if (box < 0) continue;
+                    int target = pushTarget(base, cell, boxCell, dir);
+                    if (target < 0 || Board.get(dead, target)) continue;
+                    if (!inInterior(target)) return true; // The box leaves the window.
+
+                    ensureStates(tail + 1);
+                    int child = tail++ * stride;
+                    System.arraycopy(states, base, states, child, stride);
+                    states[child] = boxCell;
+                    states[child + box] = target;
+                    if (allOnCheckpoints(child)) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets the window to a bounding box plus the margin, clipped to the board, and collects the
+     * cells the player can enter it through.
+     */
+    private void setWindow(int minX, int minY, int maxX, int maxY) {
+        x0 = Math.max(0, minX - MARGIN);
+        y0 = Math.max(0, minY - MARGIN);
+        windowWidth = Math.min(board.getWidth() - 1, maxX + MARGIN) - x0 + 1;
+        windowHeight = Math.min(board.getHeight() - 1, maxY + MARGIN) - y0 + 1;
+        int area = windowWidth * windowHeight;
+        if (marks.length < area) {
+            marks = new int[area];
+            reachQueue = new int[area];
+            entries = new int[area];
+            epoch = 0;
+        }
+
+        entryCount = 0;
+        int width = board.getWidth();
+        for (int y = y0; y < y0 + windowHeight; y++) {
+            for (int x = x0; x < x0 + windowWidth; x++) {
+                int cell = y * width + x;
+                if (!isWalkable(board.staticTile(cell))) continue;
+                boolean entry = false;
+                for (int dir = 0; dir < 4 && !entry; dir++) {
+                    int next = board.neighbor(cell, dir);
+                    if (next < 0) continue;
+                    int tile = board.staticTile(next);
+                    entry = !inWindow(next) || tile == Board.PORTAL_PURPLE || tile == Board.PORTAL_GREEN;
+                }
+                if (entry) entries[entryCount++] = cell;
+            }
+        }
+    }
+
+    /**
+     * Finds the cells of the window the player can walk to in a position, the way
+     * {@link BoardBfs#reach(int)} does on the whole board.
+     *
+     * @param base The offset of the position in the state queue.
+     */
+    private void reach(int base) {
+        reached = 0;
+        if (++epoch == 0) {
+            // The stamps wrapped around; old marks could be mistaken for new ones.
+            Arrays.fill(marks, 0);
+            epoch = 1;
+        }
+        boolean outside = false;
+        if (states[base] < 0) {
+            enterFromOutside(base);
+            outside = true;
+        } else {
+            visit(states[base]);
+        }
+        int next = 0;
+        while (next < reached) {
+            int cell = reachQueue[next++];
+            for (int dir = 0; dir < 4; dir++) {
+                int to = board.neighbor(cell, dir);
+                if (to < 0) continue;
+                if (!inWindow(to)) {
+                    if (!outside) {
+                        enterFromOutside(base);
+                        outside = true;
+                    }
+                    continue;
+                }
+                if (boxIndex(base, to) >= 0) continue;
+                int tile = board.staticTile(to);
+                if (tile == Board.WALL || tile == Board.LAVA) continue;
+                if (tile == Board.PORTAL_PURPLE || tile == Board.PORTAL_GREEN) {
+                    int exit = board.portalExitCell(to, dir);
+                    if (exit >= 0) {
+                        // The exit must be clear; otherwise entering the portal is fatal.
+                        if (boxIndex(base, exit) >= 0) continue;
+                        if (inWindow(exit)) {
+                            visit(exit);
+                        } else if (!outside) {
+                            enterFromOutside(base);
+                            outside = true;
+                        }
+                        continue;
+                    }
+                    // Without a partner the player stays on the portal.
+                    if (board.portalPartner(to) >= 0) continue;
+                }
+                visit(to);
+            }
+        }
+    }
+
+    /**
+     * Lets the player into the window from outside through every entry cell without a box.
+     */
+    private void enterFromOutside(int base) {
+        for (int i = 0; i < entryCount; i++) {
+            if (boxIndex(base, entries[i]) < 0) visit(entries[i]);
+        }
+    }
+
+    /**
+     * Marks a window cell as reached and queues it, unless it was reached before.
+     */
+    private void visit(int cell) {
+        int local = (cell / board.getWidth() - y0) * windowWidth + cell % board.getWidth() - x0;
+        if (marks[local] != epoch) {
+            marks[local] = epoch;
+            reachQueue[reached++] = cell;
+        }
+    }
+
+    /**
+     * Determines where a box lands when the player pushes it, the way {@link Board#move(int)} does.
+     *
+     * @return The landing cell, or -1 if the push is blocked.
+     */
+    private int pushTarget(int base, int player, int boxCell, int dir) {
+        int target = board.neighbor(boxCell, dir);
+        if (target < 0 || boxIndex(base, target) >= 0) return -1;
+        int tile = board.staticTile(target);
+        if (tile == Board.WALL || tile == Board.LAVA) return -1;
+        if (tile == Board.PORTAL_PURPLE || tile == Board.PORTAL_GREEN) {
+            // A box travels through a portal only if the exit is free; the pusher counts as occupying it.
+            target = board.portalExitCell(target, dir);
+            if (target < 0 || target == player || boxIndex(base, target) >= 0) return -1;
+        }
+        return target;
+    }
+
+    /**
+     * Finds a box in a position.
+     *
+     * @return The index of the box within the position (1 or more), or -1 if the cell has no box.
+     */
+    private int boxIndex(int base, int cell) {
+        for (int b = 1; b < stride; b++) {
+            if (states[base + b] == cell) return b;
+        }
+        return -1;
+    }
+
+    /**
+     * Checks whether every box of a position rests on a checkpoint.
+     */
+    private boolean allOnCheckpoints(int base) {
+        for (int b = 1; b < stride; b++) {
+            if (board.staticTile(states[base + b]) != Board.CHECKPOINT) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Adds a position hash to the searched positions.
+     *
+     * @return False if it was searched before.
+     */
+    private boolean addSeen(long key) {
+        int mask = seenKeys.length - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (seenStamps[slot] == search) {
+            if (seenKeys[slot] == key) return false;
+            slot = (slot + 1) & mask;
+        }
+        seenStamps[slot] = search;
+        seenKeys[slot] = key;
+        return true;
+    }
+
+    /**
+     * Makes room for a number of positions in the state queue.
+     */
+    private void ensureStates(int count) {
+        if (count * stride > states.length) {
+            states = Arrays.copyOf(states, Math.max(states.length * 2, count * stride));
+        }
+    }
+
+    /**
+     * Checks whether a cell lies in the window.
+     */
+    private boolean inWindow(int cell) {
+        int x = cell % board.getWidth() - x0;
+        int y = cell / board.getWidth() - y0;
+        return x >= 0 && x < windowWidth && y >= 0 && y < windowHeight;
+    }
+
+    /**
+     * Checks whether a box on a cell can still be followed: it is in the window and not on a side
+     * of the window that borders the rest of the board.
+     */
+    private boolean inInterior(int cell) {
+        if (!inWindow(cell)) return false;
+        int x = cell % board.getWidth();
+        int y = cell / board.getWidth();
+        return (x > x0 || x0 == 0) && (x < x0 + windowWidth - 1 || x0 + windowWidth == board.getWidth())
+                && (y > y0 || y0 == 0) && (y < y0 + windowHeight - 1 || y0 + windowHeight == board.getHeight());
+    }
+
+    /**
+     * Checks whether the player can stand on a tile when it holds no box.
+     */
+    private static boolean isWalkable(int tile) {
+        return tile != Board.WALL && tile != Board.LAVA && tile != Board.PORTAL_PURPLE && tile != Board.PORTAL_GREEN;
+    }
+}
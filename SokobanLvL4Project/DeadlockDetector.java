@@ -0,0 +1,289 @@
+/**
+ * The DeadlockDetector class recognises box positions from which a level can no longer be solved
+ * without undoing moves or starting over. A death in lava or at a blocked portal also starts over:
+ * it puts the boxes back, so none of these positions is ever lost for good in the game.
+ *
+ * Dead squares (cells from which a box can never be pushed onto a checkpoint, even through portals)
+ * are precomputed once per level. Freeze deadlocks (boxes that can no longer move along either axis
+ * while not resting on a checkpoint) are checked dynamically after a push, and so are corral
+ * deadlocks (boxes fencing off an area the player cannot reach that can never all be pushed onto
+ * checkpoints). Only small corrals are searched; larger ones are assumed to be solvable.
+ * The search only looks at a window around the corral (see {@link CorralSearch}), so it works the
+ * same on boards of any size.
+ * The interactive game uses every check through {@link #isDeadlocked(int)}. The solvers use dead
+ * squares and freeze deadlocks only: a corral search costs more than the states it prunes there.
+ */
+import java.util.Arrays;
+
+public class DeadlockDetector {
+
+    /**
+     * Corrals with more cells than this, boxes included, are not searched.
+     */
+    private static final int MAX_CORRAL_CELLS = 64;
+
+    /**
+     * Corrals with more boxes than this are not searched.
+     */
+    private static final int MAX_CORRAL_BOXES = 6;
+
+    // The board the detector was built for.
+    private final Board board;
+
+    // Minimum number of pushes from each cell to a checkpoint (Solver.UNREACHABLE for dead squares).
+    private final int[] pushDistance;
+
+    // Bitset of dead squares.
+    private final long[] dead;
+
+    // Epoch-stamped marks of boxes treated as walls during a freeze check, and of the cells
+    // of a corral during a corral check, so no clearing is needed.
+    private final int[] marks;
+    private int epoch;
+
+    // Set when a frozen box that is not on a checkpoint was found during the current check.
+    private boolean frozenOffCheckpoint;
+
+    // The cells of the corral being checked, and how many of them hold boxes.
+    private final int[] corral = new int[MAX_CORRAL_CELLS];
+    private int corralSize;
+    private int corralBoxes;
+
+    // The push search for corrals. Created on first use.
+    private CorralSearch corralSearch;
+
+    // The hash of the last corral searched (player cell and boxes) and whether it was lost.
+    private long lastCorral;
+    private boolean lastCorralLost;
+
+    /**
+     * Constructor for the DeadlockDetector class. Precomputes the dead squares of the board's level.
+     *
+     * @param board The board to analyse.
+     */
+    public DeadlockDetector(Board board) {
+        this.board = board;
+        int cells = board.getWidth() * board.getHeight();
+        this.pushDistance = Solver.computePushDistances(board);
+        this.dead = new long[(cells + 63) >>> 6];
+        this.marks = new int[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            int tile = board.staticTile(cell);
+            boolean boxCanRest = tile == Board.FLOOR || tile == Board.CHECKPOINT;
+            if (boxCanRest && pushDistance[cell] == Solver.UNREACHABLE) {
+                Board.set(dead, cell);
+            }
+        }
+    }
+
+    /**
+     * Checks whether a box on the given cell can never reach a checkpoint.
+     *
+     * @param cell The cell to check.
+     * @return True if the cell is a dead square.
+     */
+    public boolean isDeadSquare(int cell) {
+        return Board.get(dead, cell);
+    }
+
+    /**
+     * Gets the push distance table the dead squares were derived from.
+     *
+     * @return The minimum number of pushes from each cell to a checkpoint.
+     */
+    public int[] getPushDistances() {
+        return pushDistance;
+    }
+
+    /**
+     * Checks whether the box on the given cell is part of a deadlock: it stands on a dead square,
+     * it is frozen together with at least one box that is not on a checkpoint, or it borders a
+     * corral that can never be cleared.
+     *
+     * @param boxCell The cell of a box that has just been pushed.
+     * @return True if the level can no longer be solved without undoing moves or starting over.
+     */
+    public boolean isDeadlocked(int boxCell) {
+        return isDeadSquare(boxCell) || isFreezeDeadlock(boxCell) || isCorralDeadlock(boxCell);
+    }
+
+    /**
+     * Checks for a freeze deadlock around the box on the given cell.
+     *
+     * @param boxCell The cell of a box.
+     * @return True if the box is frozen and it or a box it is frozen against is off its checkpoint.
+     */
+    public boolean isFreezeDeadlock(int boxCell) {
+        nextEpoch();
+        frozenOffCheckpoint = false;
+        return isFrozen(boxCell) && frozenOffCheckpoint;
+    }
+
+    /**
+     * Checks for a corral deadlock next to the box on the given cell. A corral is a small area the
+     * player cannot walk into because boxes and walls fence it off; its boxes are the ones in and
+     * around it. It is a deadlock if those boxes alone can never all be pushed onto checkpoints:
+     * the other boxes and the coins only get in the way, so they cannot help either.
+     *
+     * @param boxCell The cell of a box.
+     * @return True if the boxes of a corral next to the box can never all reach checkpoints.
+     */
+    public boolean isCorralDeadlock(int boxCell) {
+        if (isOpenAround(boxCell)) return false;
+        for (int dir = 0; dir < 4; dir++) {
+            int cell = board.neighbor(boxCell, dir);
+            if (cell >= 0 && isCorral(cell) && isCorralLost()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether the eight cells around a box are all open and one of them holds the player.
+     * Every area next to the box then joins the player's around it, so none of them is a corral.
+     */
+    private boolean isOpenAround(int boxCell) {
+        int width = board.getWidth();
+        int x = boxCell % width;
+        int y = boxCell / width;
+        boolean player = false;
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                if (dx == 0 && dy == 0) continue;
+                if (x + dx < 0 || x + dx >= width || y + dy < 0 || y + dy >= board.getHeight()) return false;
+                int cell = (y + dy) * width + x + dx;
+                if (cell == board.getPlayer()) {
+                    player = true;
+                } else if (!isCorralCell(cell)) {
+                    return false;
+                }
+            }
+        }
+        return player;
+    }
+
+    /**
+     * Collects the area around a cell that is fenced off by boxes, walls and lava, and the boxes
+     * around it, into corralSize and corralBoxes.
+     *
+     * @param start The first cell of the area.
+     * @return True if the area is a corral worth searching: small, without the player or a portal,
+     *         with few boxes and at least one of them off a checkpoint.
+     */
+    private boolean isCorral(int start) {
+        corralSize = 0;
+        corralBoxes = 0;
+        if (!isCorralCell(start)) return false;
+        nextEpoch();
+        boolean solved = true;
+        marks[start] = epoch;
+        corral[corralSize++] = start;
+        for (int i = 0; i < corralSize; i++) {
+            int cell = corral[i];
+            if (board.hasBox(cell)) {
+                // A fence box; the area does not continue behind it.
+                if (board.staticTile(cell) != Board.CHECKPOINT) solved = false;
+                continue;
+            }
+            for (int dir = 0; dir < 4; dir++) {
+                int next = board.neighbor(cell, dir);
+                if (next < 0 || marks[next] == epoch) continue;
+                int tile = board.staticTile(next);
+                if (tile == Board.WALL || tile == Board.LAVA) continue;
+
+                // The player, a portal (which the player may come out of) or a large area means no corral.
+                if (!board.hasBox(next) && !isCorralCell(next)) return false;
+                if (corralSize == MAX_CORRAL_CELLS) return false;
+                if (board.hasBox(next) && ++corralBoxes > MAX_CORRAL_BOXES) return false;
+                marks[next] = epoch;
+                corral[corralSize++] = next;
+            }
+        }
+        return !solved;
+    }
+
+    /**
+     * Checks whether a cell can be part of the inside of a corral.
+     */
+    private boolean isCorralCell(int cell) {
+        int tile = board.staticTile(cell);
+        return cell != board.getPlayer() && !board.hasBox(cell) && tile != Board.WALL && tile != Board.LAVA
+                && tile != Board.PORTAL_PURPLE && tile != Board.PORTAL_GREEN;
+    }
+
+    /**
+     * Searches the corral just collected, starting from the current player cell with only the
+     * corral's boxes and no coins. The result for the last corral is remembered, since undoing,
+     * redoing or pushing a box back and forth meets the same corral again.
+     *
+     * @return True if the corral's boxes can never all reach checkpoints.
+     */
+    private boolean isCorralLost() {
+        long key = Zobrist.player(board.getPlayer());
+        for (int i = 0; i < corralSize; i++) {
+            if (board.hasBox(corral[i])) key ^= Zobrist.box(corral[i]);
+        }
+        if (corralSearch != null && key == lastCorral) return lastCorralLost;
+
+        if (corralSearch == null) corralSearch = new CorralSearch(board, dead);
+        lastCorral = key;
+        lastCorralLost = !corralSearch.canPlaceBoxes(corral, corralSize);
+        return lastCorralLost;
+    }
+
+    /**
+     * Starts a new freeze or corral check: all marks become stale.
+     */
+    private void nextEpoch() {
+        if (++epoch == 0) {
+            // The stamps wrapped around; old marks could be mistaken for new ones.
+            Arrays.fill(marks, 0);
+            epoch = 1;
+        }
+    }
+
+    /**
+     * Checks whether a box can no longer move along either axis.
+     */
+    private boolean isFrozen(int cell) {
+        // Treat this box as a wall while its neighbours are examined, which also stops cycles.
+        marks[cell] = epoch;
+        boolean frozen = isBlocked(cell, Board.LEFT, Board.RIGHT) && isBlocked(cell, Board.UP, Board.DOWN);
+        if (frozen && board.staticTile(cell) != Board.CHECKPOINT) {
+            frozenOffCheckpoint = true;
+        }
+        return frozen;
+    }
+
+    /**
+     * Checks whether a box is blocked along one axis.
+     *
+     * @param cell The box cell.
+     * @param dirA One direction of the axis.
+     * @param dirB The opposite direction.
+     * @return True if the box can never be pushed along this axis again.
+     */
+    private boolean isBlocked(int cell, int dirA, int dirB) {
+        int a = board.neighbor(cell, dirA);
+        int b = board.neighbor(cell, dirB);
+
+        // A wall (or lava, which neither boxes nor the player may enter) on either side blocks the axis.
+        if (isWallLike(a) || isWallLike(b)) return true;
+
+        // Dead squares on both sides mean any push along this axis is useless.
+        if (isDeadSquare(a) && isDeadSquare(b)) return true;
+
+        // A neighbouring box blocks the axis if it is frozen itself.
+        return (board.hasBox(a) && isFrozen(a)) || (board.hasBox(b) && isFrozen(b));
+    }
+
+    /**
+     * Checks whether a cell acts like a wall for box movement.
+     */
+    private boolean isWallLike(int cell) {
+        if (cell < 0 || marks[cell] == epoch) return true;
+        int tile = board.staticTile(cell);
+        return tile == Board.WALL || tile == Board.LAVA;
+    }
+}
@@ -0,0 +1,223 @@
+/**
+ * The FrameSnapshot class is an immutable picture of everything the renderer needs to draw one
+ * frame: the camera position, the static tiles of the level and the player, boxes and coins
+ * inside the camera window.
+ * Snapshots are captured by the logic thread and handed to the renderer, so drawing never
+ * reads the game while it is being changed.
+ */
+import java.util.Arrays;
+
+public class FrameSnapshot {
+
+    // The static tiles of the whole level; shared by all snapshots of a level.
+    private final ChunkedGrid staticTiles;
+
+    // Dimensions of the level in tiles.
+    private final int levelWidth;
+    private final int levelHeight;
+
+    // Increases whenever the whole field changed, for example after a reset or a death.
+    private final int generation;
+
+    // The top-left tile of the camera window.
+    private final int offsetX;
+    private final int offsetY;
+
+    // The player's cell and the cells and tile values of the boxes and coins inside the window.
+    private final int playerCell;
+    private final int[] objectCells;
+    private final int[] objectTiles;
+
+    // Game state shown to the player.
+    private final boolean hopeless;
+    private final int coinCount;
+
+    // When the oldest key press first shown by this snapshot happened, or 0.
+    private final long inputTime;
+
+    private FrameSnapshot(ChunkedGrid staticTiles, int levelWidth, int levelHeight, int generation,
+                          int offsetX, int offsetY, int playerCell, int[] objectCells, int[] objectTiles,
+                          boolean hopeless, int coinCount, long inputTime) {
+        this.staticTiles = staticTiles;
+        this.levelWidth = levelWidth;
+        this.levelHeight = levelHeight;
+        this.generation = generation;
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        this.playerCell = playerCell;
+        this.objectCells = objectCells;
+        this.objectTiles = objectTiles;
+        this.hopeless = hopeless;
+        this.coinCount = coinCount;
+        this.inputTime = inputTime;
+    }
+
+    /**
+     * Captures the current state of a game. Must be called by the thread that changes the game.
+     *
+     * @param game           The game.
+     * @param staticTiles    The static tiles of the current level, from {@link Game#getStaticTiles()}.
+     * @param generation     The field generation.
+     * @param offsetX        The left edge of the camera window, in tiles.
+     * @param offsetY        The top edge of the camera window, in tiles.
+     * @param viewportWidth  The width of the camera window, in tiles.
+     * @param viewportHeight The height of the camera window, in tiles.
+     * @param inputTime      The System.nanoTime() of the oldest key press applied since the previous
+     *                       snapshot, or 0; used to measure input latency.
+     * @return The snapshot.
+     */
+    public static FrameSnapshot capture(Game game, ChunkedGrid staticTiles, int generation,
+                                        int offsetX, int offsetY, int viewportWidth, int viewportHeight,
+                                        long inputTime) {
+        int width = game.getRowCount();
+        int height = game.getColCount();
+        int left = Math.max(0, offsetX);
+        int top = Math.max(0, offsetY);
+        int right = Math.min(width, offsetX + viewportWidth);
+        int bottom = Math.min(height, offsetY + viewportHeight);
+
+        // Collect the boxes and coins of each visible row through the board's bitsets.
+        int[] cells = new int[16];
+        int[] tiles = new int[16];
+        int count = 0;
+        for (int y = top; y < bottom; y++) {
+            int end = y * width + right;
+            for (int cell = game.nextObjectCell(y * width + left); cell >= 0 && cell < end;
+                 cell = game.nextObjectCell(cell + 1)) {
+                if (count == cells.length) {
+                    cells = Arrays.copyOf(cells, count * 2);
+                    tiles = Arrays.copyOf(tiles, count * 2);
+                }
+                cells[count] = cell;
+                tiles[count] = game.getTile(cell - y * width, y);
+                count++;
+            }
+        }
+
+        int playerCell = game.getPlayerY() * width + game.getPlayerX();
+        return new FrameSnapshot(staticTiles, width, height, generation, offsetX, offsetY, playerCell,
+                Arrays.copyOf(cells, count), Arrays.copyOf(tiles, count), game.isHopeless(), game.coinCount, inputTime);
+    }
+
+    /**
+     * Checks whether another snapshot shows the same level, camera window and field generation,
+     * so only the moving objects can differ between the two.
+     *
+     * @param other The other snapshot, or null.
+     * @return True if the static part of both frames is identical.
+     */
+    public boolean sameBackground(FrameSnapshot other) {
+        return other != null && other.staticTiles == staticTiles && other.generation == generation
+                && other.offsetX == offsetX && other.offsetY == offsetY && other.hopeless == hopeless;
+    }
+
+    /**
+     * Gets the static tiles of the level.
+     *
+     * @return The static tiles. Must not be modified.
+     */
+    public ChunkedGrid getStaticTiles() {
+        return staticTiles;
+    }
+
+    /**
+     * Gets the width of the level.
+     *
+     * @return The width in tiles.
+     */
+    public int getLevelWidth() {
+        return levelWidth;
+    }
+
+    /**
+     * Gets the height of the level.
+     *
+     * @return The height in tiles.
+     */
+    public int getLevelHeight() {
+        return levelHeight;
+    }
+
+    /**
+     * Gets the left edge of the camera window.
+     *
+     * @return The horizontal offset in tiles.
+     */
+    public int getOffsetX() {
+        return offsetX;
+    }
+
+    /**
+     * Gets the top edge of the camera window.
+     *
+     * @return The vertical offset in tiles.
+     */
+    public int getOffsetY() {
+        return offsetY;
+    }
+
+    /**
+     * Gets the player's cell.
+     *
+     * @return The packed cell index of the player.
+     */
+    public int getPlayerCell() {
+        return playerCell;
+    }
+
+    /**
+     * Gets the number of boxes and coins inside the camera window.
+     *
+     * @return The number of objects.
+     */
+    public int getObjectCount() {
+        return objectCells.length;
+    }
+
+    /**
+     * Gets the cell of a box or coin inside the camera window.
+     *
+     * @param i The index of the object.
+     * @return The packed cell index.
+     */
+    public int getObjectCell(int i) {
+        return objectCells[i];
+    }
+
+    /**
+     * Gets the tile value of a box or coin inside the camera window.
+     *
+     * @param i The index of the object.
+     * @return The tile value.
+     */
+    public int getObjectTile(int i) {
+        return objectTiles[i];
+    }
+
+    /**
+     * Checks whether the level was deadlocked.
+     *
+     * @return True if the level could no longer be solved without undoing or resetting.
+     */
+    public boolean isHopeless() {
+        return hopeless;
+    }
+
+    /**
+     * Gets the number of coins collected in the level.
+     *
+     * @return The coin count.
+     */
+    public int getCoinCount() {
+        return coinCount;
+    }
+
+    /**
+     * Gets the time of the oldest key press this snapshot is the first to show.
+     *
+     * @return The System.nanoTime() of the key press, or 0 if there was none.
+     */
+    public long getInputTime() {
+        return inputTime;
+    }
+}
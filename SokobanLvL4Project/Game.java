@@ -1,70 +1,101 @@
 /**
  * The Game class represents the core logic for the Sokoban game, including level management,
  * player movements, and interactions with game elements such as boxes, coins, lava, and portals.
+ * A game has no user interface and no shared state: it reports what happened through the results
+ * of its methods and through {@link GameListener} events, so it runs without a display and any
+ * number of games can run in parallel (each used by one thread at a time).
  */
-import javax.swing.JOptionPane;
 import java.awt.Point;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class Game {
 
     /**
-     * The current state of the game field.
-     * This is a 2D array where each element represents a tile in the game.
+     * The current state of the game field, stored in chunks that are copied from the initial field
+     * when a move first changes them. It is kept in sync with the board and only the cells touched
+     * by a move are updated.
      */
-    private int[][] gameField;
+    private ChunkedGrid gameField;
 
     /**
-     * The initial state of the game field.
-     * Used to reset the field to its original configuration.
+     * The static tiles of the level, built once when the level is loaded.
      */
-    private int[][] initialGameField;
+    private ChunkedGrid staticTiles;
 
     /**
-     * List of points representing box positions in the game.
+     * The compact state engine holding boxes, coins, lava, checkpoints and portals as bitsets.
      */
-    private List<Point> boxes;
+    private Board board;
 
     /**
-     * List of initial box positions for resetting the game.
+     * Dead square, freeze and corral deadlock detection, precomputed when the level is loaded.
      */
-    private List<Point> initialBoxes;
+    private DeadlockDetector deadlocks;
 
     /**
-     * List of checkpoint positions where boxes must be placed.
+     * Reusable breadth-first searches over the current board.
      */
-    private List<Point> checkpoints;
+    private BoardBfs bfs;
 
     /**
-     * List of coin positions in the game.
+     * Whether a push has left the level in a state that can no longer be solved.
      */
-    private List<Point> coins;
+    private boolean hopeless = false;
 
     /**
-     * List of initial coin positions for resetting the game.
+     * Number of applied moves at the time the level became hopeless, or -1.
      */
-    private List<Point> initialCoins;
+    private int hopelessAt = -1;
 
     /**
-     * List of lava tile positions that cause the player to reset on contact.
+     * The moves of the current attempt, stored as compact deltas for undo and redo.
      */
-    private List<Point> lava;
+    private final MoveHistory history = new MoveHistory();
 
     /**
-     * List of purple portal positions.
+     * The recording of the current attempt (two bits per accepted move).
      */
-    private List<Point> portalsPurple;
+    private Replay replay;
 
     /**
-     * List of green portal positions.
+     * The recording of the last completed level, or null.
      */
-    private List<Point> portalsGreen;
+    private Replay completedReplay;
+
+    /**
+     * Whether the whole game field changed (new level, reset or death) and must be redrawn.
+     * Changes made by single moves need no flag: the renderer compares the objects of consecutive
+     * snapshots instead.
+     */
+    private boolean fullRedraw = true;
+
+    /**
+     * The player's current position, maintained incrementally so it never has to be searched for.
+     */
+    private int playerX;
+    private int playerY;
+
+    /**
+     * The levels that can be played, either the built-in levels or a level pack.
+     */
+    private final LevelSource source;
 
     /**
      * The index of the current level being played.
      */
     private int currentLevel = 0;
 
+    /**
+     * Listeners informed about completed levels and portal errors.
+     */
+    private final List<GameListener> listeners = new CopyOnWriteArrayList<>();
+
     /**
      * Counter for the number of coins collected by the player in the current level.
      */
@@ -75,7 +106,7 @@ public class Game {
      * The values in the array represent different tile types (e.g., floor, walls, boxes).
      */
 
-    private int[][][] levels = new int[][][] {
+    private static final int[][][] levels = new int[][][] {
 
             new int[][] {
                     {0,0,0,0,0,0,0,0,0,0,0,0},
@@ -186,19 +217,48 @@ public class Game {
             }
     };
 
+    /**
+     * The titles of the built-in levels.
+     */
+    private static final String[] titles = {
+            "Beginning",
+            "Challenge",
+            "Challenge 2",
+            "Easy Maze",
+            "Lava Zone",
+            "Portal Room",
+            "The Right Path"
+    };
 
+    /**
+     * The built-in levels as a level source.
+     */
+    private static final LevelSource BUILT_IN = new BuiltInLevels();
 
     /**
-     * Constructor for the Game class.
+     * Constructor for the Game class, playing the built-in levels.
      *
      * @param levelIndex The index of the level to load.
      * @throws IllegalArgumentException if the provided level index is invalid.
      */
     public Game(int levelIndex) {
-        // Validate that the level index is within bounds.
-        if (levelIndex < 0 || levelIndex >= levels.length) {
+        this(BUILT_IN, levelIndex);
+    }
+
+    /**
+     * Constructor for the Game class, playing the levels of a level source.
+     *
+     * @param source     The levels to play.
+     * @param levelIndex The index of the level to load.
+     * @throws IllegalArgumentException if the provided level index is invalid.
+     */
+    public Game(LevelSource source, int levelIndex) {
+        // Validate that the level exists.
+        if (!source.hasLevel(levelIndex)) {
             throw new IllegalArgumentException("Invalid level: " + levelIndex);
         }
+        this.source = source;
+
         // Set the current level.
         this.currentLevel = levelIndex;
 
@@ -212,217 +272,241 @@ public class Game {
      * @param idx The index of the level to load.
      */
     private void loadLevel(int idx) {
-        // Clone the game field for the current level.
-        gameField = clone2D(levels[idx]);
-        // Clone the initial field for resetting purposes.
-        initialGameField = clone2D(levels[idx]);
-
-        // Identify and store the positions of key elements on the game field.
-        checkpoints = findTiles(4); // Checkpoints where boxes must be placed.
-        boxes = findTiles(3); // Box positions.
-        coins = findTiles(5); // Coin positions.
-        lava = findTiles(6); // Lava positions.
-        portalsPurple = findTiles(7); // Purple portal positions.
-        portalsGreen = findTiles(8); // Green portal positions.
-
-        // Save the initial positions of boxes and coins for resets.
-        initialBoxes = new ArrayList<>(boxes);
-        initialCoins = new ArrayList<>(coins);
+        // Build the bitset board holding the positions of all key elements.
+        board = source.getLevel(idx).createBoard();
+        deadlocks = new DeadlockDetector(board);
+        bfs = new BoardBfs(board);
+        // Levels are identified by index; the seed is only meaningful for generated levels.
+        replay = new Replay(idx, 0);
+        clearHistory();
+        updatePlayerPosition();
+
+        // Fill the game field from the board, which also resolves combined tiles from level files.
+        // The initial field stays shared with the game field wherever no move has changed it.
+        ChunkedGrid initialField = new ChunkedGrid(board.getWidth(), board.getHeight(), board::displayTile);
+        gameField = initialField.copyOnWrite();
+        staticTiles = new ChunkedGrid(board.getWidth(), board.getHeight(), board::staticTile);
+        fullRedraw = true;
 
         // Reset the coin count for the new level.
         coinCount = 0;
     }
 
+    /**
+     * Gets the number of built-in levels.
+     *
+     * @return The number of levels.
+     */
+    public static int getLevelCount() {
+        return levels.length;
+    }
+
+    /**
+     * Returns a copy of a built-in level layout.
+     *
+     * @param idx The index of the level.
+     * @return A deep copy of the level layout.
+     * @throws IllegalArgumentException if the level index is invalid.
+     */
+    public static int[][] getLevelLayout(int idx) {
+        if (idx < 0 || idx >= levels.length) {
+            throw new IllegalArgumentException("Invalid level: " + idx);
+        }
+        return Arrays.stream(levels[idx]).map(int[]::clone).toArray(int[][]::new);
+    }
+
+    /**
+     * Gets the built-in levels as a level source.
+     *
+     * @return The built-in levels.
+     */
+    public static LevelSource builtInLevels() {
+        return BUILT_IN;
+    }
+
+    /**
+     * Registers a listener for the events of this game.
+     *
+     * @param listener The listener to add.
+     */
+    public void addGameListener(GameListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with {@link #addGameListener(GameListener)}.
+     *
+     * @param listener The listener to remove.
+     */
+    public void removeGameListener(GameListener listener) {
+        listeners.remove(listener);
+    }
+
     /**
      * Moves the player up by one tile.
      */
     public void moveUp() {
-        move(0, -1);
+        move(Board.UP);
     }
 
     /**
      * Moves the player down by one tile.
      */
     public void moveDown() {
-        move(0, 1);
+        move(Board.DOWN);
     }
 
     /**
      * Moves the player left by one tile.
      */
     public void moveLeft() {
-        move(-1, 0);
+        move(Board.LEFT);
     }
 
     /**
      * Moves the player right by one tile.
      */
     public void moveRight() {
-        move(1, 0);
+        move(Board.RIGHT);
     }
 
     /**
      * Handles the logic for moving the player.
      *
-     * @param dx The change in the x-coordinate.
-     * @param dy The change in the y-coordinate.
-     */
-    private void move(int dx, int dy) {
-        // Find the player's current position on the game field.
-        Point playerPos = findPlayer();
-        if (playerPos == null) return; // If the player is not found, exit.
-
-        // Calculate the new position for the player.
-        int newX = playerPos.x + dx;
-        int newY = playerPos.y + dy;
-
-        // Ensure the new position is within bounds.
-        if (!inBounds(newX, newY)) return;
-
-        // Get the tile value at the new position.
-        int tileVal = gameField[newY][newX];
-        if (tileVal == 1) return; // Prevent movement into walls.
-
-        // Create a Point object for the new position.
-        Point nextPos = new Point(newX, newY);
-
-        // Handle interaction with boxes.
-        if (boxes.contains(nextPos)) {
-            // Attempt to push the box. If unsuccessful, exit.
-            if (!pushBox(nextPos, dx, dy)) {
-                return;
-            }
-        }
+     * @param dir The direction to move in (one of the Board direction codes).
+     * @return What happened: one of the Board move results ({@link Board#BLOCKED}, {@link Board#MOVED},
+     *         {@link Board#PUSHED}, {@link Board#DIED} or {@link Board#PORTAL_ERROR}).
+     */
+    public int move(int dir) {
+        if (!GameMetrics.ENABLED) return applyMove(dir);
+        long start = System.nanoTime();
+        Board moved = board; // Completing the level replaces the board.
+        int result = applyMove(dir);
+        boolean teleported = (result == Board.MOVED || result == Board.PUSHED)
+                && moved.getLastTo() != moved.neighbor(moved.getLastFrom(), dir);
+        GameMetrics.recordMove(result, teleported, System.nanoTime() - start);
+        return result;
+    }
 
-        // Handle interaction with lava.
-        if (lava.contains(nextPos)) {
-            // Reset the level if the player steps on lava.
-            resetAfterDeath();
-            return;
+    /**
+     * Applies a move to the board and updates the game state from the result.
+     *
+     * @param dir The direction to move in.
+     * @return The board's move result.
+     */
+    private int applyMove(int dir) {
+        // Let the board apply the game rules and record every accepted move.
+        int result = board.move(dir);
+        if (result != Board.BLOCKED) {
+            replay.add(dir);
         }
 
-        // Restore the tile the player is leaving.
-        preserveTileAfterLeaving(playerPos);
-
-        // Handle interaction with portals.
-        if (tileVal == 7 || tileVal == 8) {
-            try {
-                // Attempt to teleport the player through the portal.
-                Point exitPos = getPortalExit(newX, newY, dx, dy);
-                if (exitPos != null) {
-                    if (lava.contains(exitPos)) {
-                        resetAfterDeath();
-                        return;
-                    }
-                    // Update the player's position to the portal exit.
-                    newX = exitPos.x;
-                    newY = exitPos.y;
-                }
-            } catch (PortalException e) {
-                // Handle portal-related errors and reset the level.
-                JOptionPane.showMessageDialog(null, e.getMessage(), "Portal Error", JOptionPane.ERROR_MESSAGE);
+        switch (result) {
+            case Board.BLOCKED:
+                return result; // Nothing changed.
+            case Board.DIED:
+                // The player stepped on lava; the board has already been reset.
                 resetAfterDeath();
-                return;
-            }
+                return result;
+            case Board.PORTAL_ERROR:
+                // The portal exit was blocked; reset the level and report it.
+                resetAfterDeath();
+                for (GameListener listener : listeners) listener.portalError(this);
+                return result;
+            default:
+                break;
         }
 
-        // Update the player's position on the game field.
-        gameField[newY][newX] = 2;
+        // Remember the move so it can be undone.
+        history.record(dir, board.getLastFrom(), board.getLastTo(), board.getLastBoxFrom(), board.getLastBoxTo(),
+                board.getLastCoin() >= 0);
 
-        // Handle coin collection.
-        if (coins.contains(new Point(newX, newY))) {
-            // Remove the coin from the game field and update the coin count.
-            coins.remove(new Point(newX, newY));
-            coinCount++;
-        }
-
-        // Check if the level is completed.
+        // Update the game field, the coin count and the deadlock flag, then check for completion.
+        applyLastMove();
         checkCompletion();
+        return result;
     }
 
     /**
-     * Pushes a box in the specified direction.
-     *
-     * @param boxPos The current position of the box.
-     * @param dx     The change in the x-coordinate.
-     * @param dy     The change in the y-coordinate.
-     * @return True if the box was successfully pushed; otherwise, false.
+     * Updates the game field, the coin count and the deadlock flag after the board changed by one move.
      */
-    private boolean pushBox(Point boxPos, int dx, int dy) {
-        // Calculate the new position for the box.
-        int pushX = boxPos.x + dx;
-        int pushY = boxPos.y + dy;
-
-        // Ensure the new position is within bounds.
-        if (!inBounds(pushX, pushY)) return false;
+    private void applyLastMove() {
+        // Update only the cells that changed on the game field.
+        updatePlayerPosition();
+        refreshCell(board.getLastFrom());
+        refreshCell(board.getLastTo());
+        refreshCell(board.getLastBoxFrom());
+        refreshCell(board.getLastBoxTo());
 
-        // Get the tile value at the new position.
-        int pushTile = gameField[pushY][pushX];
-
-        // Prevent pushing the box into walls, lava, or other boxes.
-        if (pushTile == 1 || pushTile == 6 || boxes.contains(new Point(pushX, pushY))) {
-            return false;
+        // Flag pushes that leave the level unsolvable; only a reset or an undo can fix them.
+        if (board.getLastBoxTo() >= 0 && !hopeless && deadlocks.isDeadlocked(board.getLastBoxTo())) {
+            hopeless = true;
+            hopelessAt = history.size();
         }
 
-        // Remove the box from its current position.
-        boxes.remove(boxPos);
-
-        // Handle interaction with portals for the box.
-        if (pushTile == 7 || pushTile == 8) {
-            Point exitPos = getPortalExit(pushX, pushY, dx, dy);
-            if (exitPos == null) {
-                // If the portal exit is invalid, restore the box to its original position.
-                boxes.add(boxPos);
-                return false;
-            }
-            // Move the box to the portal exit.
-            boxes.add(exitPos);
-            gameField[exitPos.y][exitPos.x] = 3;
-        } else {
-            // Move the box to the new position.
-            boxes.add(new Point(pushX, pushY));
-            gameField[pushY][pushX] = 3;
+        // Handle coin collection.
+        if (board.getLastCoin() >= 0) {
+            coinCount++;
         }
-
-        // Restore the tile the box left.
-        preserveTileAfterLeaving(boxPos);
-        return true;
     }
 
     /**
-     * Determines the exit position of a portal.
+     * Undoes the last move of the current attempt. Deaths and resets start a new attempt,
+     * so moves before them cannot be undone.
      *
-     * @param pX The x-coordinate of the portal.
-     * @param pY The y-coordinate of the portal.
-     * @param dx The change in the x-coordinate.
-     * @param dy The change in the y-coordinate.
-     * @return The exit position of the portal as a Point.
-     * @throws PortalException if the portal exit is blocked.
-     */
-    private Point getPortalExit(int pX, int pY, int dx, int dy) {
-        // Determine the type of portal and its corresponding exit list.
-        int tile = gameField[pY][pX];
-        List<Point> fromList = (tile == 7) ? portalsPurple : portalsGreen;
-        List<Point> toList = (tile == 7) ? portalsGreen : portalsPurple;
-
-        // Find the index of the portal in the list.
-        int idx = fromList.indexOf(new Point(pX, pY));
-        if (idx < 0 || idx >= toList.size()) {
-            return null; // If the portal has no corresponding exit, return null.
+     * @return True if a move was undone.
+     */
+    public boolean undo() {
+        int move = history.undo();
+        if (move < 0) return false;
+
+        boolean coin = history.collectedCoin(move);
+        board.undoMove(history.playerFrom(move), history.playerTo(move),
+                history.boxFrom(move), history.boxTo(move), coin);
+
+        // Update the touched cells and give back the coin.
+        updatePlayerPosition();
+        refreshCell(board.getLastFrom());
+        refreshCell(board.getLastTo());
+        refreshCell(board.getLastBoxFrom());
+        refreshCell(board.getLastBoxTo());
+        if (coin) coinCount--;
+        replay.removeLast();
+
+        // Undoing the push that caused a deadlock makes the level solvable again.
+        if (hopeless && history.size() < hopelessAt) {
+            hopeless = false;
+            hopelessAt = -1;
         }
+        return true;
+    }
 
-        // Determine the exit position of the portal.
-        Point otherPortal = toList.get(idx);
-        int idealX = otherPortal.x + dx;
-        int idealY = otherPortal.y + dy;
+    /**
+     * Redoes the last undone move.
+     *
+     * @return True if a move was redone.
+     */
+    public boolean redo() {
+        int move = history.redo();
+        if (move < 0) return false;
 
-        // Check if the exit position is a valid free tile.
-        if (!isFreeTile(idealX, idealY)) {
-            throw new PortalException("Player stuck after portal! Invalid block: " + gameField[idealY][idealX]);
-        }
+        board.redoMove(history.playerFrom(move), history.playerTo(move),
+                history.boxFrom(move), history.boxTo(move), history.collectedCoin(move));
+        replay.add(history.direction(move));
+        applyLastMove();
+        checkCompletion();
+        return true;
+    }
 
-        return new Point(idealX, idealY);
+    /**
+     * Forgets the move history and the deadlock flag at the start of a new attempt.
+     */
+    private void clearHistory() {
+        history.clear();
+        hopeless = false;
+        hopelessAt = -1;
     }
+
     /**
      * Finds the nearest free tile from a starting position within a maximum distance.
      *
@@ -432,224 +516,208 @@ public class Game {
      * @return A Point representing the nearest free tile, or null if none is found.
      */
     private Point findNearestFreeTile(int startX, int startY, int maxDist) {
-        // Use a queue to perform a breadth-first search (BFS).
-        Queue<Point> queue = new LinkedList<>();
-        // Keep track of visited tiles to avoid processing the same tile multiple times.
-        Set<Point> visited = new HashSet<>();
-
-        // Initialize the starting point.
-        Point start = new Point(startX, startY);
-        queue.add(start);
-        visited.add(start);
-
-        // Perform BFS up to the specified maximum distance.
-        int distance = 0;
-        while (!queue.isEmpty() && distance <= maxDist) {
-            int size = queue.size();
-            for (int i = 0; i < size; i++) {
-                Point cur = queue.poll(); // Dequeue the current tile.
-                if (isFreeTile(cur.x, cur.y)) {
-                    return cur; // Return the tile if it is free.
-                }
-                // Check neighboring tiles in all four cardinal directions.
-                for (int[] d : new int[][] {{1, 0}, {-1, 0}, {0, 1}, {0, -1}}) {
-                    int nx = cur.x + d[0];
-                    int ny = cur.y + d[1];
-                    Point np = new Point(nx, ny);
-                    // Add the neighboring tile to the queue if it is within bounds and not visited.
-                    if (!visited.contains(np) && inBounds(nx, ny)) {
-                        visited.add(np);
-                        queue.add(np);
-                    }
-                }
-            }
-            distance++; // Increment the distance after processing all tiles at the current level.
-        }
-        return null; // Return null if no free tile is found within the maximum distance.
+        int width = board.getWidth();
+        if (startX < 0 || startX >= width || startY < 0 || startY >= board.getHeight()) return null;
+        int cell = bfs.nearestFreeCell(startY * width + startX, maxDist);
+        return cell < 0 ? null : new Point(cell % width, cell / width);
     }
 
     /**
-     * Checks whether a specific tile is free (i.e., walkable).
+     * Copies the displayed value of a single cell from the board to the game field.
      *
-     * @param x The x-coordinate of the tile.
-     * @param y The y-coordinate of the tile.
-     * @return True if the tile is free, otherwise false.
+     * @param cell The packed cell index to refresh, or -1 to do nothing.
      */
-    private boolean isFreeTile(int x, int y) {
-        // Ensure the tile is within bounds.
-        if (!inBounds(x, y)) return false;
-        // Check if the tile is not occupied by a box.
-        if (boxes.contains(new Point(x, y))) return false;
-        // Check if the tile is walkable (value of 0).
-        int tv = gameField[y][x];
-        return (tv == 0);
+    private void refreshCell(int cell) {
+        if (cell < 0) return;
+        int width = getRowCount();
+        gameField.set(cell % width, cell / width, board.displayTile(cell));
     }
 
     /**
-     * Restores the original state of a tile after a player or box leaves it.
+     * Brings the game field back in line with the board after a reset or a death. Only the chunks
+     * changed since the level was loaded are recomputed; everything else still matches the board.
+     */
+    private void refreshField() {
+        gameField.refreshTouched(board::displayTile);
+        fullRedraw = true;
+    }
+
+    /**
+     * Checks whether the whole game field has to be redrawn, for example after a new level
+     * was loaded, the level was reset or the player died.
      *
-     * @param oldPos The position of the tile being restored.
-     */
-    private void preserveTileAfterLeaving(Point oldPos) {
-        // Get the original value of the tile from the initial game field.
-        int origVal = initialGameField[oldPos.y][oldPos.x];
-        // Restore the tile to its original value.
-        if (origVal == 7 || origVal == 8) {
-            gameField[oldPos.y][oldPos.x] = origVal; // Restore portal tiles.
-        } else if (origVal == 4) {
-            gameField[oldPos.y][oldPos.x] = 4; // Restore checkpoint tiles.
-        } else if (origVal == 1) {
-            gameField[oldPos.y][oldPos.x] = 1; // Restore wall tiles.
-        } else {
-            gameField[oldPos.y][oldPos.x] = 0; // Restore floor tiles.
-        }
+     * @return True if every cell may have changed since the last call to {@link #clearDirty()}.
+     */
+    public boolean isFullRedrawNeeded() {
+        return fullRedraw;
+    }
+
+    /**
+     * Marks the game field as drawn, clearing the full redraw flag.
+     */
+    public void clearDirty() {
+        fullRedraw = false;
     }
 
     /**
      * Checks whether the level is complete by verifying if all boxes are on checkpoints.
      */
     private void checkCompletion() {
-        for (Point b : boxes) {
-            if (!checkpoints.contains(b)) {
-                return; // If any box is not on a checkpoint, the level is not complete.
-            }
+        if (!board.isSolved()) {
+            return; // If any box is not on a checkpoint, the level is not complete.
         }
-        // Update the total coin count and reset the current level's coin count.
-        StartUpMenu.totalCoins += coinCount;
+        // Keep the recording of the completed run.
+        replay.setResult(true, coinCount);
+        completedReplay = replay;
+        saveReplay(replay);
+
+        // Report the coins of the level and reset the current level's coin count.
+        int coins = coinCount;
         coinCount = 0;
+        for (GameListener listener : listeners) listener.levelCompleted(this, currentLevel, coins);
         // Load the next level.
         loadNextLevel();
     }
 
     /**
-     * Loads the next level if available. If the player has completed all levels, display a congratulatory message.
+     * Writes a completed run to the directory named by the "sokoban.replayDir" system property, if set.
+     *
+     * @param run The replay to save.
+     */
+    private void saveReplay(Replay run) {
+        String dir = System.getProperty("sokoban.replayDir");
+        // Replays refer to levels by index, so only runs of the built-in levels can be verified later.
+        if (dir == null || source != BUILT_IN) return;
+        Path file = Paths.get(dir, "level" + (run.getLevelId() + 1) + "-" + System.currentTimeMillis() + Replay.EXTENSION);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            run.write(out);
+        } catch (IOException e) {
+            // Print the stack trace if the replay cannot be saved.
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Gets the recording of the current attempt.
+     *
+     * @return The replay of the moves made since the level was loaded or reset.
      */
-    public void loadNextLevel() {
-        if (currentLevel < levels.length - 1) {
+    public Replay getReplay() {
+        return replay;
+    }
+
+    /**
+     * Gets the recording of the last level the player completed.
+     *
+     * @return The replay, or null if no level was completed yet.
+     */
+    public Replay getCompletedReplay() {
+        return completedReplay;
+    }
+
+    /**
+     * Loads the next level if available. If the player has completed all levels, the listeners are told instead.
+     *
+     * @return True if the next level was loaded; false if there are no more levels.
+     */
+    public boolean loadNextLevel() {
+        if (source.hasLevel(currentLevel + 1)) {
             currentLevel++; // Increment the current level index.
             loadLevel(currentLevel); // Load the next level.
-        } else {
-            // Display a congratulatory message if all levels are completed.
-            JOptionPane.showMessageDialog(null,
-                    "Congratulations! You've completed all levels!",
-                    "Game Complete",
-                    JOptionPane.INFORMATION_MESSAGE);
-
-            // Return to the start menu.
-            javax.swing.SwingUtilities.invokeLater(() -> {
-                new StartUpMenu();
-            });
+            return true;
         }
+        for (GameListener listener : listeners) listener.allLevelsCompleted(this);
+        return false;
     }
 
     /**
      * Resets the game field and elements to their state at the start of the level after the player dies.
+     * Collected coins stay collected.
      */
     private void resetAfterDeath() {
-        // Save the current state of coins.
-        List<Point> savedCoins = new ArrayList<>(coins);
-        int savedCount = coinCount;
-
-        // Reset the game field to its initial state.
-        gameField = clone2D(initialGameField);
-
-        // Reset the boxes to their initial positions.
-        boxes = new ArrayList<>(initialBoxes);
-        for (Point b : boxes) {
-            gameField[b.y][b.x] = 3; // Mark box positions on the game field.
-        }
-
-        // Restore the saved coin state.
-        coins = savedCoins;
-        coinCount = savedCount;
-
-        // Ensure coins not collected are marked appropriately.
-        for (Point c : initialCoins) {
-            if (!coins.contains(c)) {
-                gameField[c.y][c.x] = 0;
-            }
-        }
-
-        // Restore the player's original position.
-        Point orig = findTileInArray(initialGameField, 2);
-        if (orig != null) {
-            gameField[orig.y][orig.x] = 2;
-        }
+        // The board has already moved the boxes and the player back; redraw the field from it.
+        clearHistory();
+        updatePlayerPosition();
+        refreshField();
     }
 
     /**
      * Resets the game field and all elements to their initial states.
      */
     public void resetField() {
-        gameField = clone2D(initialGameField); // Reset the game field.
-        boxes = new ArrayList<>(initialBoxes); // Reset the box positions.
-        coins = new ArrayList<>(initialCoins); // Reset the coin positions.
+        board.reset(); // Reset the box and coin positions and the player.
+        clearHistory(); // A fresh level is always solvable again.
+        replay.clear(); // A reset starts a new recorded attempt.
+        updatePlayerPosition(); // Move the tracked player position back to the start.
+        refreshField(); // Reset the game field.
         coinCount = 0; // Reset the coin count.
     }
 
     /**
      * Finds the player's current position on the game field.
+     * The position is tracked incrementally, so this no longer scans the field.
      *
-     * @return A Point representing the player's position, or null if not found.
+     * @return A Point representing the player's position.
      */
     public Point findPlayer() {
-        return findTileInArray(gameField, 2); // Find the tile with the value 2 (player).
+        return new Point(playerX, playerY);
     }
 
     /**
-     * Finds the position of the first tile with a specific value in a 2D array.
+     * Gets the player's x-coordinate in constant time.
      *
-     * @param arr     The 2D array to search.
-     * @param tileVal The value of the tile to find.
-     * @return A Point representing the position of the tile, or null if not found.
-     */
-    private Point findTileInArray(int[][] arr, int tileVal) {
-        for (int y = 0; y < arr.length; y++) {
-            for (int x = 0; x < arr[0].length; x++) {
-                if (arr[y][x] == tileVal) {
-                    return new Point(x, y); // Return the position if the tile matches the value.
-                }
-            }
-        }
-        return null; // Return null if no matching tile is found.
+     * @return The x-coordinate of the player.
+     */
+    public int getPlayerX() {
+        return playerX;
     }
 
     /**
-     * Finds all tiles with a specific value in the game field.
+     * Gets the player's y-coordinate in constant time.
      *
-     * @param tileValue The value of the tiles to find.
-     * @return A list of Points representing the positions of the tiles.
-     */
-    private List<Point> findTiles(int tileValue) {
-        List<Point> list = new ArrayList<>();
-        for (int y = 0; y < gameField.length; y++) {
-            for (int x = 0; x < gameField[0].length; x++) {
-                if (gameField[y][x] == tileValue) {
-                    list.add(new Point(x, y)); // Add the position to the list if the tile matches the value.
-                }
-            }
-        }
-        return list; // Return the list of matching tile positions.
+     * @return The y-coordinate of the player.
+     */
+    public int getPlayerY() {
+        return playerY;
     }
 
     /**
-     * Checks if a tile is within the bounds of the game field.
+     * Checks whether a push has left the level in a deadlock, so it can no longer be solved
+     * without undoing that push or starting over. A death starts over too and clears the flag.
      *
-     * @param x The x-coordinate of the tile.
-     * @param y The y-coordinate of the tile.
-     * @return True if the tile is within bounds, otherwise false.
+     * @return True if the current state is hopeless.
      */
-    private boolean inBounds(int x, int y) {
-        return (x >= 0 && x < getRowCount() && y >= 0 && y < getColCount());
+    public boolean isHopeless() {
+        return hopeless;
     }
 
     /**
-     * Returns the current state of the game field.
+     * Gets the Zobrist hash of the current state, so identical states can be recognised in O(1).
      *
-     * @return A 2D array representing the game field.
+     * @return The state hash.
+     */
+    public long getStateHash() {
+        return board.getHash();
+    }
+
+    /**
+     * Copies the player's cell from the board into the tracked position.
+     */
+    private void updatePlayerPosition() {
+        int cell = board.getPlayer();
+        playerX = cell % board.getWidth();
+        playerY = cell / board.getWidth();
+    }
+
+    /**
+     * Gets the current value of a tile on the game field.
+     *
+     * @param x The x-coordinate of the tile.
+     * @param y The y-coordinate of the tile.
+     * @return The tile value.
      */
-    public int[][] getField() {
-        return gameField;
+    public int getTile(int x, int y) {
+        return gameField.get(x, y);
     }
 
     /**
@@ -658,7 +726,7 @@ public class Game {
      * @return The number of rows in the game field.
      */
     public int getRowCount() {
-        return gameField[0].length;
+        return board.getWidth();
     }
 
     /**
@@ -667,16 +735,57 @@ public class Game {
      * @return The number of columns in the game field.
      */
     public int getColCount() {
-        return gameField.length;
+        return board.getHeight();
+    }
+
+    /**
+     * Gets the index of the current level.
+     *
+     * @return The level index, starting at 0.
+     */
+    public int getCurrentLevel() {
+        return currentLevel;
+    }
+
+    /**
+     * Gets the static tiles of the whole level, which stay the same until the next level is loaded.
+     * The grid is never changed, so it may be read by other threads.
+     *
+     * @return The static tile values; a new grid for every loaded level.
+     */
+    public ChunkedGrid getStaticTiles() {
+        return staticTiles;
     }
 
     /**
-     * Clones a 2D array to create a deep copy.
+     * Finds the next cell holding a box or a coin, so renderers can draw the moving objects
+     * without looking at every tile.
      *
-     * @param src The 2D array to clone.
-     * @return A new 2D array that is a deep copy of the source array.
+     * @param fromCell The first packed cell index (y * width + x) to look at.
+     * @return The first such cell at or after fromCell, or -1 if there is none.
      */
-    private int[][] clone2D(int[][] src) {
-        return Arrays.stream(src).map(int[]::clone).toArray(int[][]::new);
+    public int nextObjectCell(int fromCell) {
+        return board.nextObject(fromCell);
+    }
+
+    /**
+     * Serves the built-in levels through the LevelSource interface.
+     */
+    private static class BuiltInLevels implements LevelSource {
+
+        @Override
+        public int size() {
+            return levels.length;
+        }
+
+        @Override
+        public Level getLevel(int index) {
+            return new Level(titles[index], getLevelLayout(index));
+        }
+
+        @Override
+        public String getTitle(int index) {
+            return titles[index];
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,359 @@
+/**
+ * The GameBenchmark class measures the hot paths of {@link Game}: walking, pushing, collecting
+ * coins, travelling through portals, dying in lava, resetting, loading a level and finding the
+ * player. Every benchmark runs on each built-in level where the situation occurs and on large
+ * synthetic boards.
+ *
+ * Each benchmark is warmed up first, then timed in several batches; the median time per operation
+ * and the bytes allocated per operation (measured per thread by the JVM) are printed. Benchmarks
+ * whose moves stay in the undo history and the replay start every batch from a reset level, so those
+ * keep the same size from batch to batch instead of growing for the whole run. Run it before and
+ * after a change to {@link Game} to compare the two.
+ */
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class GameBenchmark {
+
+    /**
+     * Side lengths of the synthetic boards.
+     */
+    private static final int[] SYNTHETIC_SIZES = {256, 1024};
+
+    /**
+     * Number of timed batches per benchmark.
+     */
+    private static final int BATCHES = 5;
+
+    // Per-thread allocation counter of the JVM.
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Keeps results alive so the JIT cannot drop the measured work.
+    private static long sink;
+
+    /**
+     * A situation to measure: a game, the moves that walk the player into position and the
+     * direction of the measured move.
+     */
+    private static final class Setup {
+        final Game game;
+        final int[] path;
+        final int dir;
+
+        Setup(Game game, int[] path, int dir) {
+            this.game = game;
+            this.path = path;
+            this.dir = dir;
+        }
+
+        /**
+         * Walks the player back into position, for example after a death.
+         */
+        void walk() {
+            for (int d : path) game.move(d);
+        }
+
+        /**
+         * Resets the level and walks back into position, forgetting the moves of the last batch.
+         * The history and the replay keep their capacity, so the next batch allocates nothing for them.
+         */
+        void restart() {
+            game.resetField();
+            walk();
+            game.clearDirty();
+        }
+    }
+
+    /**
+     * Runs all benchmarks and prints one line per benchmark and level.
+     *
+     * @param args Optionally "--time" followed by the milliseconds per batch (default 200),
+     *             and a benchmark name to run only that benchmark.
+     */
+    public static void main(String[] args) {
+        long batchMillis = 200;
+        String only = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--time") && i + 1 < args.length) {
+                batchMillis = Long.parseLong(args[++i]);
+            } else {
+                only = args[i];
+            }
+        }
+        if (!THREADS.isThreadAllocatedMemorySupported()) {
+            System.out.println("Allocation measurement is not supported by this JVM; B/op shows -1.");
+        } else {
+            THREADS.setThreadAllocatedMemoryEnabled(true);
+        }
+
+        // The built-in levels followed by the synthetic boards.
+        List<String> names = new ArrayList<>();
+        List<LevelSource> sources = new ArrayList<>();
+        List<Integer> indices = new ArrayList<>();
+        LevelSource builtIn = Game.builtInLevels();
+        for (int i = 0; i < builtIn.size(); i++) {
+            names.add("level" + (i + 1));
+            sources.add(builtIn);
+            indices.add(i);
+        }
+        for (int size : SYNTHETIC_SIZES) {
+            names.add(size + "x" + size);
+            sources.add(new SyntheticLevel(size));
+            indices.add(0);
+        }
+
+        System.out.printf("%-10s %-10s %12s %10s%n", "benchmark", "level", "ns/op", "B/op");
+        for (int i = 0; i < names.size(); i++) {
+            LevelSource source = sources.get(i);
+            int index = indices.get(i);
+            String level = names.get(i);
+            Level data = source.getLevel(index);
+
+            if (matches(only, "walk")) {
+                Setup s = find(source, index, data, Board.MOVED, Kind.WALK);
+                // Walk there and back, so the player never leaves the spot.
+                if (s != null) run("walk", level, batchMillis, 2, () -> {
+                    s.game.move(s.dir);
+                    s.game.move(s.dir ^ 1);
+                    s.game.clearDirty();
+                }, s::restart);
+            }
+            if (matches(only, "push")) {
+                Setup s = find(source, index, data, Board.PUSHED, Kind.BOX);
+                if (s != null) run("push", level, batchMillis, 1, () -> moveAndUndo(s), null);
+            }
+            if (matches(only, "coin")) {
+                Setup s = find(source, index, data, Board.MOVED, Kind.COIN);
+                if (s != null) run("coin", level, batchMillis, 1, () -> moveAndUndo(s), null);
+            }
+            if (matches(only, "portal")) {
+                Setup s = find(source, index, data, Board.MOVED, Kind.PORTAL);
+                if (s != null) run("portal", level, batchMillis, 1, () -> moveAndUndo(s), null);
+            }
+            if (matches(only, "lava")) {
+                // A death sends the player back to the start; walking back is part of the operation
+                // unless the lava lies right next to the start.
+                Setup s = find(source, index, data, Board.DIED, Kind.LAVA);
+                if (s != null) run("lava", level, batchMillis, 1, () -> {
+                    s.game.move(s.dir);
+                    s.walk();
+                    s.game.clearDirty();
+                }, s::restart);
+            }
+            if (matches(only, "reset")) {
+                Game game = new Game(source, index);
+                run("reset", level, batchMillis, 1, () -> {
+                    game.resetField();
+                    game.clearDirty();
+                }, null);
+            }
+            if (matches(only, "load")) {
+                run("load", level, batchMillis, 1, () -> sink += new Game(source, index).getRowCount(), null);
+            }
+            if (matches(only, "findPlayer")) {
+                Game game = new Game(source, index);
+                run("findPlayer", level, batchMillis, 1, () -> sink += game.findPlayer().x, null);
+            }
+        }
+        if (sink == 42) System.out.println();
+    }
+
+    /**
+     * Checks whether a benchmark was selected on the command line.
+     */
+    private static boolean matches(String only, String name) {
+        return only == null || only.equals(name);
+    }
+
+    /**
+     * Makes the measured move and takes it back, restoring the position for the next operation.
+     */
+    private static void moveAndUndo(Setup s) {
+        s.game.move(s.dir);
+        s.game.undo();
+        s.game.clearDirty();
+    }
+
+    /**
+     * What the measured move runs into.
+     */
+    private enum Kind { WALK, BOX, COIN, PORTAL, LAVA }
+
+    /**
+     * Finds a spot the player can walk to from the start, next to a tile of the given kind, and
+     * checks on a trial game that the move there has the expected result without finishing the level.
+     *
+     * @return The setup with the player in position, or null if the level has no such spot.
+     */
+    private static Setup find(LevelSource source, int index, Level level, int expected, Kind kind) {
+        Board board = level.createBoard();
+        int cells = board.getWidth() * board.getHeight();
+
+        // Breadth-first search over cells the player can walk on without side effects.
+        int[] parentDir = new int[cells];
+        int[] parent = new int[cells];
+        Arrays.fill(parent, -2);
+        int[] queue = new int[cells];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = board.getPlayer();
+        parent[board.getPlayer()] = -1;
+        while (head < tail) {
+            int cell = queue[head++];
+            for (int dir = 0; dir < 4; dir++) {
+                int next = board.neighbor(cell, dir);
+                if (next < 0) continue;
+                if (kindOf(board, next) == kind) {
+                    Setup setup = trial(source, index, path(parent, parentDir, cell), dir, expected, kind);
+                    if (setup != null) return setup;
+                }
+                if (parent[next] == -2 && isWalkable(board, next)) {
+                    parent[next] = cell;
+                    parentDir[next] = dir;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Classifies what a move onto a cell runs into.
+     */
+    private static Kind kindOf(Board board, int cell) {
+        if (board.hasBox(cell)) return Kind.BOX;
+        if (board.hasCoin(cell)) return Kind.COIN;
+        int tile = board.staticTile(cell);
+        if (tile == Board.PORTAL_PURPLE || tile == Board.PORTAL_GREEN) return Kind.PORTAL;
+        if (tile == Board.LAVA) return Kind.LAVA;
+        if (isWalkable(board, cell)) return Kind.WALK;
+        return null;
+    }
+
+    /**
+     * Checks whether the player can step on a cell without pushing, collecting or teleporting.
+     */
+    private static boolean isWalkable(Board board, int cell) {
+        int tile = board.staticTile(cell);
+        return (tile == Board.FLOOR || tile == Board.CHECKPOINT) && !board.hasBox(cell) && !board.hasCoin(cell);
+    }
+
+    /**
+     * Rebuilds the moves leading from the start to a cell.
+     */
+    private static int[] path(int[] parent, int[] parentDir, int cell) {
+        int length = 0;
+        for (int c = cell; parent[c] >= 0; c = parent[c]) length++;
+        int[] moves = new int[length];
+        for (int c = cell; parent[c] >= 0; c = parent[c]) moves[--length] = parentDir[c];
+        return moves;
+    }
+
+    /**
+     * Tries a setup on a fresh game and returns it if the move behaves as expected.
+     */
+    private static Setup trial(LevelSource source, int index, int[] path, int dir, int expected, Kind kind) {
+        Setup setup = new Setup(new Game(source, index), path, dir);
+        setup.walk();
+        int coins = setup.game.coinCount;
+        int result = setup.game.move(dir);
+        if (result != expected || setup.game.getCurrentLevel() != index) return null;
+        if (kind == Kind.COIN && setup.game.coinCount != coins + 1) return null;
+        if (kind != Kind.LAVA && !setup.game.undo()) return null;
+        if (kind == Kind.LAVA) setup.walk();
+        setup.game.clearDirty();
+        return setup;
+    }
+
+    /**
+     * Warms up and times one benchmark, then prints its line.
+     *
+     * @param name        The benchmark name.
+     * @param level       The level name.
+     * @param batchMillis The duration of each batch.
+     * @param opsPerCall  The number of operations one call of the body performs.
+     * @param body        The measured work.
+     * @param restart     Untimed work run after the warm-up and after every batch, or null.
+     */
+    private static void run(String name, String level, long batchMillis, int opsPerCall, Runnable body,
+                            Runnable restart) {
+        // Warm up for as long as one batch takes and size the batches from the achieved rate.
+        long calls = 0;
+        long start = System.nanoTime();
+        long deadline = start + batchMillis * 1_000_000L;
+        while (System.nanoTime() < deadline) {
+            body.run();
+            calls++;
+        }
+        long perBatch = Math.max(1, calls);
+        if (restart != null) restart.run();
+
+        long thread = Thread.currentThread().getId();
+        double[] nanosPerOp = new double[BATCHES];
+        long allocated = 0;
+        for (int b = 0; b < BATCHES; b++) {
+            long bytesBefore = THREADS.getThreadAllocatedBytes(thread);
+            long t0 = System.nanoTime();
+            for (long i = 0; i < perBatch; i++) body.run();
+            long t1 = System.nanoTime();
+            allocated += THREADS.getThreadAllocatedBytes(thread) - bytesBefore;
+            nanosPerOp[b] = (double) (t1 - t0) / (perBatch * opsPerCall);
+            if (restart != null) restart.run();
+        }
+        Arrays.sort(nanosPerOp);
+        double bytesPerOp = allocated < 0 ? -1 : (double) allocated / (BATCHES * perBatch * opsPerCall);
+        System.out.printf("%-10s %-10s %12.1f %10.1f%n", name, level, nanosPerOp[BATCHES / 2], bytesPerOp);
+    }
+
+    /**
+     * A large square board: the player in the middle with a box, a coin, a portal and lava a few
+     * steps away, a second portal near a corner, and boxes on checkpoints scattered over the rest.
+     */
+    private static final class SyntheticLevel implements LevelSource {
+        private final int size;
+
+        SyntheticLevel(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return 1;
+        }
+
+        @Override
+        public Level getLevel(int index) {
+            int[][] tiles = new int[size][size];
+            for (int i = 0; i < size; i++) {
+                tiles[0][i] = tiles[size - 1][i] = Board.WALL;
+                tiles[i][0] = tiles[i][size - 1] = Board.WALL;
+            }
+
+            // Fill the board with solved boxes, keeping the area around the player clear.
+            int c = size / 2;
+            Random random = new Random(size);
+            for (int y = 1; y < size - 1; y++) {
+                for (int x = 1; x < size - 1; x++) {
+                    boolean nearPlayer = Math.abs(x - c) < 6 && Math.abs(y - c) < 6;
+                    if (!nearPlayer && random.nextInt(100) == 0) tiles[y][x] = Board.BOX_ON_CHECKPOINT;
+                }
+            }
+
+            tiles[c][c] = Board.PLAYER;
+            tiles[c][c + 2] = Board.BOX;
+            tiles[c][c + 4] = Board.CHECKPOINT;
+            tiles[c][c - 2] = Board.COIN;
+            tiles[c - 2][c] = Board.PORTAL_PURPLE;
+            tiles[c + 2][c] = Board.LAVA;
+            for (int y = size - 5; y < size - 2; y++) {
+                for (int x = size - 5; x < size - 2; x++) tiles[y][x] = Board.FLOOR;
+            }
+            tiles[size - 4][size - 4] = Board.PORTAL_GREEN;
+            return new Level(size + "x" + size, tiles);
+        }
+    }
+}
@@ -2,16 +2,20 @@
  * GameIO is responsible for rendering the Sokoban game interface.
  * It extends JFrame to provide a graphical window for the game.
  * This class manages the game's visuals, input handling, and player interaction.
+ *
+ * Key presses are queued by the event dispatch thread and applied by a dedicated logic thread,
+ * which publishes an immutable {@link FrameSnapshot} after every batch. The renderer only ever
+ * draws snapshots, so a slow frame never delays input and input never waits for a frame.
  */
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The main class for the Sokoban game's GUI and input management.
@@ -21,16 +25,8 @@ public class GameIO extends JFrame {
     // The game instance that holds the game state.
     private Game game;
 
-    // BufferedImages for different game elements.
-    private BufferedImage boxImage;  // Image for the box element in the game.
-    private BufferedImage floorImage; // Image for the floor tiles.
-    private BufferedImage endPoint; // Image for the end point or target location.
-    private BufferedImage wallImage; // Image for the wall tiles.
-    private BufferedImage playerImage; // Image for the player character.
-    private BufferedImage coinImage; // Image for the collectible coins.
-    private BufferedImage lavaImage; // Image for lava tiles.
-    private BufferedImage portalPurple; // Image for purple portal.
-    private BufferedImage portalGreen; // Image for green portal.
+    // Draws the snapshots into the display area.
+    private GameRenderer renderer;
 
     // Dimensions of the viewport.
     private int viewportWidth; // Number of tiles visible horizontally.
@@ -40,8 +36,44 @@ public class GameIO extends JFrame {
     private int offsetX = 0; // Horizontal offset.
     private int offsetY = 0; // Vertical offset.
 
-    // BufferedImage used as the display area for rendering.
-    private BufferedImage displayArea;
+    // The label showing the display area; repainted only where tiles changed.
+    private JLabel displayLabel;
+
+    /**
+     * Whether the window is drawn by a dedicated render thread with page flipping instead of
+     * by Swing. Enabled with the system property "sokoban.activeRendering".
+     */
+    private final boolean activeRendering = Boolean.getBoolean("sokoban.activeRendering");
+
+    /**
+     * Number of logic ticks (and, in active rendering mode, frames) per second.
+     */
+    private static final int UPDATES_PER_SECOND = 60;
+
+    // The canvas and its page-flipping buffers in active rendering mode.
+    private Canvas canvas;
+    private BufferStrategy bufferStrategy;
+
+    // Key presses waiting to be applied by the logic thread.
+    private final ConcurrentLinkedQueue<KeyPress> inputQueue = new ConcurrentLinkedQueue<>();
+
+    // The latest state published by the logic thread.
+    private volatile FrameSnapshot snapshot;
+
+    // The last snapshot whose drawing time was recorded in the metrics.
+    private FrameSnapshot measuredFrame;
+
+    // Whether a repaint of the latest snapshot is already scheduled on the event dispatch thread.
+    private final AtomicBoolean renderScheduled = new AtomicBoolean();
+
+    // State of the logic thread: the static tiles of the current level and the field generation.
+    private ChunkedGrid staticTiles;
+    private int generation;
+
+    // The logic and render threads and whether they should keep running.
+    private Thread logicThread;
+    private Thread renderThread;
+    private volatile boolean running;
 
     // Scale determines the size of each tile on the screen.
     private int scale;
@@ -66,54 +98,56 @@ public class GameIO extends JFrame {
         // Set the scale for rendering.
         this.scale = scale;
 
-        // Load images for the game elements.
-        try {
-            boxImage = ImageIO.read(new File("box.png")); // Load box image.
-            floorImage = ImageIO.read(new File("floor.png")); // Load floor image.
-            endPoint = ImageIO.read(new File("box_target.png")); // Load target image.
-            wallImage = ImageIO.read(new File("wall1.png")); // Load wall image.
-            playerImage = ImageIO.read(new File("player.png")); // Load player image.
-            coinImage = ImageIO.read(new File("coin.png")); // Load coin image.
-            lavaImage = ImageIO.read(new File("lavav.png")); // Load lava image.
-            portalPurple = ImageIO.read(new File("PortalPurple.png")); // Load purple portal image.
-            portalGreen = ImageIO.read(new File("PortalGreen.png")); // Load green portal image.
-        } catch (IOException e) {
-            // Print the stack trace if image loading fails.
-            e.printStackTrace();
-        }
-
-        // Map key presses to game actions.
+        // Map key presses to game actions. They run on the logic thread.
         inputMap = Map.of(
-                KeyEvent.VK_W, () -> {
-                    game.moveUp(); // Move up when 'W' is pressed.
-                    onPlayerMove(); // Update the game state.
-                },
-                KeyEvent.VK_S, () -> {
-                    game.moveDown(); // Move down when 'S' is pressed.
-                    onPlayerMove(); // Update the game state.
-                },
-                KeyEvent.VK_A, () -> {
-                    game.moveLeft(); // Move left when 'A' is pressed.
-                    onPlayerMove(); // Update the game state.
-                },
-                KeyEvent.VK_D, () -> {
-                    game.moveRight(); // Move right when 'D' is pressed.
-                    onPlayerMove(); // Update the game state.
-                },
-                KeyEvent.VK_R, () -> {
-                    game.resetField(); // Reset the game field when 'R' is pressed.
-                    onPlayerMove(); // Update the game state.
-                }
+                KeyEvent.VK_W, game::moveUp, // Move up when 'W' is pressed.
+                KeyEvent.VK_S, game::moveDown, // Move down when 'S' is pressed.
+                KeyEvent.VK_A, game::moveLeft, // Move left when 'A' is pressed.
+                KeyEvent.VK_D, game::moveRight, // Move right when 'D' is pressed.
+                KeyEvent.VK_R, game::resetField, // Reset the game field when 'R' is pressed.
+                KeyEvent.VK_Z, game::undo, // Undo the last move when 'Z' is pressed.
+                KeyEvent.VK_Y, game::redo // Redo the last undone move when 'Y' is pressed.
         );
 
         // Initialize the GUI components.
         initGUI();
 
-        // Center the camera on the player's initial position.
-        centerCameraOnPlayer();
+        // React to the game's events; they arrive on the logic thread.
+        game.addGameListener(new GameListener() {
+            @Override
+            public void levelCompleted(Game game, int levelIndex, int coins) {
+                // Add the coins of the level to the total shown in the start menu.
+                SwingUtilities.invokeLater(() -> StartUpMenu.totalCoins += coins);
+            }
+
+            @Override
+            public void allLevelsCompleted(Game game) {
+                // Close the game window, display a congratulatory message and return to the start menu.
+                SwingUtilities.invokeLater(() -> {
+                    GameIO.this.dispose();
+                    JOptionPane.showMessageDialog(null,
+                            "Congratulations! You've completed all levels!",
+                            "Game Complete",
+                            JOptionPane.INFORMATION_MESSAGE);
+                    new StartUpMenu();
+                });
+            }
+
+            @Override
+            public void portalError(Game game) {
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null,
+                        "Player stuck after portal! Invalid exit tile.",
+                        "Portal Error", JOptionPane.ERROR_MESSAGE));
+            }
+        });
 
-        // Update the display area.
-        updateOutput();
+        // Show the initial state, then hand the game over to the logic thread.
+        publishSnapshot(0);
+        renderSnapshot(snapshot);
+        if (!activeRendering) {
+            displayLabel.repaint();
+        }
+        startThreads();
     }
 
     /**
@@ -132,12 +166,22 @@ public class GameIO extends JFrame {
         viewportWidth = windowWidth / scale;
         viewportHeight = windowHeight / scale;
 
-        // Initialize the BufferedImage for the display area.
-        displayArea = new BufferedImage(viewportWidth * scale, viewportHeight * scale, BufferedImage.TYPE_INT_ARGB);
-
-        // Create a JLabel to display the BufferedImage.
-        JLabel displayLabel = new JLabel(new ImageIcon(displayArea));
-        getContentPane().add(displayLabel, BorderLayout.CENTER); // Add the label to the frame.
+        // Initialize the renderer, which owns the display area.
+        renderer = new GameRenderer(viewportWidth, viewportHeight, scale, getGraphicsConfiguration());
+
+        if (activeRendering) {
+            // Draw onto a canvas that Swing never repaints; the render thread presents every frame.
+            canvas = new Canvas();
+            canvas.setIgnoreRepaint(true);
+            canvas.setFocusable(false); // Keep key events on the frame.
+            canvas.setBackground(Color.BLACK);
+            getContentPane().add(canvas, BorderLayout.CENTER);
+            setIgnoreRepaint(true);
+        } else {
+            // Create a JLabel to display the BufferedImage.
+            displayLabel = new JLabel(new ImageIcon(renderer.getDisplayArea()));
+            getContentPane().add(displayLabel, BorderLayout.CENTER); // Add the label to the frame.
+        }
 
         // Set the frame properties.
         setTitle("Sokoban (With Portals!)"); // Set the title of the game window.
@@ -146,6 +190,12 @@ public class GameIO extends JFrame {
         setUndecorated(true); // Remove the window decorations (e.g., title bar).
         setVisible(true); // Make the window visible.
 
+        if (activeRendering) {
+            // Page flipping with one back buffer; needs a displayable canvas.
+            canvas.createBufferStrategy(2);
+            bufferStrategy = canvas.getBufferStrategy();
+        }
+
         // Add a KeyListener to handle key presses.
         addKeyListener(new KeyAdapter() {
             @Override
@@ -156,9 +206,9 @@ public class GameIO extends JFrame {
                         // Resume the game when ESC is pressed.
                     }
                 } else {
-                    // If the game is not paused, handle input commands.
+                    // If the game is not paused, queue the command for the logic thread.
                     if (inputMap.containsKey(e.getKeyCode())) {
-                        inputMap.get(e.getKeyCode()).run(); // Execute the corresponding action.
+                        inputQueue.offer(new KeyPress(e.getKeyCode(), GameMetrics.ENABLED ? System.nanoTime() : 0));
                     }
                 }
                 // Handle the ESC key to show the pause menu.
@@ -170,140 +220,199 @@ public class GameIO extends JFrame {
     }
 
     /**
-     * Called whenever the player moves. Updates the camera and display.
+     * Starts the logic thread and, in active rendering mode, the render thread.
+     */
+    private void startThreads() {
+        running = true;
+        final long tick = 1_000_000_000L / UPDATES_PER_SECOND;
+
+        // The logic thread applies all queued commands once per tick and publishes the result.
+        logicThread = new Thread(() -> {
+            while (running) {
+                long start = System.nanoTime();
+                if (applyQueuedInput()) {
+                    if (activeRendering) {
+                        // The render thread picks up the new snapshot on its next frame.
+                    } else if (renderScheduled.compareAndSet(false, true)) {
+                        // Draw on the event dispatch thread; several ticks may share one repaint.
+                        SwingUtilities.invokeLater(() -> {
+                            renderScheduled.set(false);
+                            renderSnapshot(snapshot);
+                        });
+                    }
+                }
+                if (!sleepUntil(start + tick)) return;
+            }
+        }, "Sokoban logic thread");
+        logicThread.setDaemon(true);
+        logicThread.start();
+
+        if (!activeRendering) return;
+
+        // The render thread presents the latest snapshot at a fixed frame rate.
+        renderThread = new Thread(() -> {
+            while (running) {
+                long start = System.nanoTime();
+                renderSnapshot(snapshot);
+                presentFrame();
+                if (!sleepUntil(start + tick)) return;
+            }
+        }, "Sokoban render thread");
+        renderThread.setDaemon(true);
+        renderThread.start();
+    }
+
+    /**
+     * Sleeps until the given time.
+     *
+     * @param deadline The time to wake up, in System.nanoTime() units.
+     * @return False if the thread was interrupted because the window was closed.
+     */
+    private static boolean sleepUntil(long deadline) {
+        long millis = (deadline - System.nanoTime()) / 1_000_000;
+        if (millis <= 0) return true;
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Applies every queued command to the game as one batch and publishes a new snapshot.
+     * Runs on the logic thread.
+     *
+     * @return True if any command was applied.
+     */
+    private boolean applyQueuedInput() {
+        KeyPress key = inputQueue.poll();
+        if (key == null) return false;
+        long inputTime = key.time; // The oldest key press of the batch.
+        synchronized (game) {
+            while (key != null) {
+                inputMap.get(key.code).run();
+                key = inputQueue.poll();
+            }
+            publishSnapshot(inputTime);
+        }
+        return true;
+    }
+
+    /**
+     * Updates the camera and publishes the current state of the game as a snapshot.
+     * Runs on the thread that changes the game.
+     *
+     * @param inputTime When the oldest key press shown by the snapshot happened, or 0.
      */
-    private void onPlayerMove() {
+    private void publishSnapshot(long inputTime) {
         // Center the camera on the player's current position.
         centerCameraOnPlayer();
 
-        // Update the graphical output.
-        updateOutput();
+        // The static tiles only change when a new level is loaded.
+        if (game.getStaticTiles() != staticTiles) {
+            staticTiles = game.getStaticTiles();
+            generation++;
+        } else if (game.isFullRedrawNeeded()) {
+            generation++;
+        }
+        game.clearDirty();
+        snapshot = FrameSnapshot.capture(game, staticTiles, generation, offsetX, offsetY,
+                viewportWidth, viewportHeight, inputTime);
     }
 
     /**
      * Centers the camera on the player's position.
      */
     private void centerCameraOnPlayer() {
-        // Get the player's current position.
-        Point p = game.findPlayer();
-
-        // If the player is not found, return early.
-        if (p == null) return;
-
-        // Calculate the desired offsets to center the player in the viewport.
-        int desiredX = p.x - viewportWidth / 2;
-        int desiredY = p.y - viewportHeight / 2;
-
-        // Calculate the maximum offsets to prevent going out of bounds.
-        int maxX = game.getRowCount() - viewportWidth;
-        int maxY = game.getColCount() - viewportHeight;
-
-        // Clamp the offsets to ensure they stay within bounds.
-        if (desiredX < 0) desiredX = 0;
-        if (desiredY < 0) desiredY = 0;
-        if (desiredX > maxX) desiredX = maxX;
-        if (desiredY > maxY) desiredY = maxY;
-
-        // Update the camera offsets.
-        offsetX = desiredX;
-        offsetY = desiredY;
+        // The player position is tracked by the game, so this is constant time.
+        offsetX = GameRenderer.cameraOffset(game.getPlayerX(), viewportWidth, game.getRowCount());
+        offsetY = GameRenderer.cameraOffset(game.getPlayerY(), viewportHeight, game.getColCount());
     }
 
     /**
-     * Updates the graphical output by rendering the game field.
+     * Draws a snapshot into the display area and repaints what changed on screen.
+     * In active rendering mode the render thread presents the whole display area instead.
+     *
+     * @param frame The snapshot to draw.
      */
-    private void updateOutput() {
-        // Get the graphics context for the display area.
-        Graphics2D g2d = (Graphics2D) displayArea.getGraphics();
-
-        // Clear the display area with a black background.
-        g2d.setColor(Color.BLACK);
-        g2d.fillRect(0, 0, displayArea.getWidth(), displayArea.getHeight());
-
-        // Iterate over the tiles in the viewport.
-        for (int screenY = 0; screenY < viewportHeight; screenY++) {
-            for (int screenX = 0; screenX < viewportWidth; screenX++) {
-                // Calculate the corresponding world coordinates.
-                int worldX = offsetX + screenX;
-                int worldY = offsetY + screenY;
-
-                // Skip tiles outside the game field bounds.
-                if (worldY < 0 || worldY >= game.getColCount() ||
-                        worldX < 0 || worldX >= game.getRowCount()) {
-                    continue;
-                }
-
-                // Calculate the pixel coordinates for rendering.
-                int px = screenX * scale;
-                int py = screenY * scale;
-
-                // Get the value of the current tile.
-                int tileVal = game.getField()[worldY][worldX];
-
-                // Render the tile based on its value.
-                switch (tileVal) {
-                    case 0:
-                        drawTile(g2d, floorImage, px, py); // Draw floor.
-                        break;
-                    case 1:
-                        drawTile(g2d, wallImage, px, py); // Draw wall.
-                        break;
-                    case 2:
-                        drawTile(g2d, floorImage, px, py); // Draw floor.
-                        drawTile(g2d, playerImage, px, py); // Draw player.
-                        break;
-                    case 3:
-                        drawTile(g2d, floorImage, px, py); // Draw floor.
-                        drawTile(g2d, boxImage, px, py); // Draw box.
-                        break;
-                    case 4:
-                        drawTile(g2d, endPoint, px, py); // Draw target.
-                        break;
-                    case 5:
-                        drawTile(g2d, floorImage, px, py); // Draw floor.
-                        drawTile(g2d, coinImage, px, py); // Draw coin.
-                        break;
-                    case 6:
-                        drawTile(g2d, lavaImage, px, py); // Draw lava.
-                        break;
-                    case 7:
-                        drawTile(g2d, floorImage, px, py); // Draw floor.
-                        drawTile(g2d, portalPurple, px, py); // Draw purple portal.
-                        break;
-                    case 8:
-                        drawTile(g2d, floorImage, px, py); // Draw floor.
-                        drawTile(g2d, portalGreen, px, py); // Draw green portal.
-                        break;
-                    default:
-                        g2d.setColor(Color.PINK); // Draw unknown tile in pink.
-                        g2d.fillRect(px, py, scale, scale);
-                }
+    private void renderSnapshot(FrameSnapshot frame) {
+        long start = GameMetrics.ENABLED ? System.nanoTime() : 0;
+        boolean full = renderer.render(frame);
+        if (GameMetrics.ENABLED && frame != measuredFrame) {
+            // Count every snapshot once, even if the render thread draws it again.
+            measuredFrame = frame;
+            GameMetrics.recordFrame(System.nanoTime() - start, frame.getInputTime());
+        }
+        if (activeRendering) return;
+        if (full) {
+            // A level of a different size may have replaced the display area.
+            ImageIcon icon = (ImageIcon) displayLabel.getIcon();
+            if (icon.getImage() != renderer.getDisplayArea()) {
+                icon.setImage(renderer.getDisplayArea());
+                displayLabel.revalidate();
+            }
+            displayLabel.repaint();
+        } else {
+            for (int i = 0; i < renderer.getChangedTileCount(); i++) {
+                int tile = renderer.getChangedTile(i);
+                repaintTile(tile % viewportWidth, tile / viewportWidth);
             }
         }
-
-        // Repaint the frame to display the updated graphics.
-        repaint();
     }
 
     /**
-     * Draws a single tile on the display area.
+     * Repaints the screen area of a single viewport tile.
      *
-     * @param g2d The graphics context for rendering.
-     * @param img The image to draw (or null for a black tile).
-     * @param x   The x-coordinate for rendering.
-     * @param y   The y-coordinate for rendering.
+     * @param screenX The horizontal position in the viewport, in tiles.
+     * @param screenY The vertical position in the viewport, in tiles.
      */
-    private void drawTile(Graphics2D g2d, Image img, int x, int y) {
-        // If the image is not null, draw it scaled.
-        if (img != null) {
-            g2d.drawImage(img, x, y, scale, scale, null);
-        } else {
-            // Draw a black tile if the image is null.
-            g2d.setColor(Color.BLACK);
-            g2d.fillRect(x, y, scale, scale);
+    private void repaintTile(int screenX, int screenY) {
+        // The label centers the display area, so translate into label coordinates.
+        BufferedImage displayArea = renderer.getDisplayArea();
+        int left = (displayLabel.getWidth() - displayArea.getWidth()) / 2;
+        int top = (displayLabel.getHeight() - displayArea.getHeight()) / 2;
+        displayLabel.repaint(left + screenX * scale, top + screenY * scale, scale, scale);
+    }
+
+    /**
+     * Copies the display area into the back buffer and flips it to the screen.
+     * Runs on the render thread in active rendering mode.
+     */
+    private void presentFrame() {
+        // The back buffer may be lost or restored by the system at any time; redraw until it sticks.
+        do {
+            do {
+                BufferedImage displayArea = renderer.getDisplayArea();
+                Graphics g = bufferStrategy.getDrawGraphics();
+                g.setColor(Color.BLACK);
+                g.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+                g.drawImage(displayArea,
+                        (canvas.getWidth() - displayArea.getWidth()) / 2,
+                        (canvas.getHeight() - displayArea.getHeight()) / 2, null);
+                g.dispose();
+            } while (bufferStrategy.contentsRestored());
+            bufferStrategy.show();
+        } while (bufferStrategy.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+    }
+
+    /**
+     * Closes the window and stops the logic and render threads.
+     */
+    @Override
+    public void dispose() {
+        running = false;
+        if (logicThread != null) {
+            logicThread.interrupt();
+        }
+        if (renderThread != null) {
+            renderThread.interrupt();
         }
+        super.dispose();
     }
 
+
     /**
      * Displays the pause menu with options to continue or return to the main menu.
      */
@@ -332,11 +441,26 @@ public class GameIO extends JFrame {
             paused = false;
         } else {
             // Update the total coins and return to the main menu.
-            StartUpMenu.totalCoins += game.coinCount;
+            synchronized (game) {
+                StartUpMenu.totalCoins += game.coinCount;
+            }
             dispose(); // Close the current window.
             new StartUpMenu(); // Open the main menu.
         }
     }
+
+    /**
+     * A key press waiting for the logic thread, with the time it happened if metrics are enabled.
+     */
+    private static final class KeyPress {
+        final int code;
+        final long time;
+
+        KeyPress(int code, long time) {
+            this.code = code;
+            this.time = time;
+        }
+    }
 }
 
 /**
@@ -0,0 +1,34 @@
+/**
+ * The GameListener interface receives the events of a {@link Game} that a user interface or a
+ * batch job may want to react to. The game itself never shows dialogs or touches global state,
+ * so games can run without a display and many of them side by side.
+ * Events are delivered on the thread that changed the game; every method does nothing by default.
+ */
+public interface GameListener {
+
+    /**
+     * Called when the player solved a level, before the next level is loaded.
+     *
+     * @param game       The game.
+     * @param levelIndex The index of the solved level.
+     * @param coins      The number of coins collected in the level.
+     */
+    default void levelCompleted(Game game, int levelIndex, int coins) {
+    }
+
+    /**
+     * Called when the last level of the game was solved.
+     *
+     * @param game The game.
+     */
+    default void allLevelsCompleted(Game game) {
+    }
+
+    /**
+     * Called when the player entered a portal whose exit was blocked. The level has been reset.
+     *
+     * @param game The game.
+     */
+    default void portalError(Game game) {
+    }
+}
@@ -0,0 +1,272 @@
+/**
+ * The GameMetrics class counts what the game does and how long it takes: moves, pushes, deaths,
+ * portal traversals and portal errors, and histograms of move processing time, frame drawing time,
+ * input-to-frame latency and asset load time.
+ *
+ * Metrics are off unless the system property "sokoban.metrics" is set to true. Every call site
+ * checks {@link #ENABLED} first, which the JIT treats as a constant, so disabled metrics cost
+ * nothing. When enabled, {@link #start()} publishes them as a JMX MBean ({@value #OBJECT_NAME})
+ * and prints a summary line every "sokoban.metrics.interval" seconds (default 10).
+ * Recording is lock-free and may happen on any thread.
+ */
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class GameMetrics implements GameMetricsMBean {
+
+    /**
+     * Whether metrics are recorded. Set with the system property "sokoban.metrics".
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("sokoban.metrics");
+
+    /**
+     * The name the MBean is registered under.
+     */
+    public static final String OBJECT_NAME = "sokoban:type=GameMetrics";
+
+    /**
+     * Seconds between two summary lines; 0 disables them.
+     */
+    private static final int LOG_INTERVAL_SECONDS = Integer.getInteger("sokoban.metrics.interval", 10);
+
+    // Event counters.
+    private static final LongAdder moves = new LongAdder();
+    private static final LongAdder pushes = new LongAdder();
+    private static final LongAdder deaths = new LongAdder();
+    private static final LongAdder portalTraversals = new LongAdder();
+    private static final LongAdder portalErrors = new LongAdder();
+
+    // Latency histograms, in nanoseconds.
+    private static final Histogram moveTime = new Histogram();
+    private static final Histogram frameTime = new Histogram();
+    private static final Histogram inputLatency = new Histogram();
+    private static final Histogram assetLoadTime = new Histogram();
+
+    // Whether the MBean and the summary line have been set up.
+    private static boolean started;
+
+    /**
+     * Registers the MBean and starts printing summary lines, once. Does nothing if metrics are disabled.
+     */
+    public static synchronized void start() {
+        if (!ENABLED || started) return;
+        started = true;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new GameMetrics(), new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            // Print the stack trace; the summary line still works without JMX.
+            e.printStackTrace();
+        }
+        if (LOG_INTERVAL_SECONDS > 0) {
+            // A daemon thread, so metrics never keep the application alive.
+            ScheduledExecutorService logger = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "Sokoban metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            logger.scheduleAtFixedRate(() -> System.out.println(getSummary()),
+                    LOG_INTERVAL_SECONDS, LOG_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Records a processed move.
+     *
+     * @param result     The move result (one of the Board move results).
+     * @param teleported Whether the player went through a portal.
+     * @param nanos      How long the game took to process the move.
+     */
+    public static void recordMove(int result, boolean teleported, long nanos) {
+        moves.increment();
+        if (result == Board.PUSHED) pushes.increment();
+        if (result == Board.DIED) deaths.increment();
+        if (result == Board.PORTAL_ERROR) portalErrors.increment();
+        if (teleported) portalTraversals.increment();
+        moveTime.record(nanos);
+    }
+
+    /**
+     * Records a drawn frame.
+     *
+     * @param nanos     How long drawing the frame took.
+     * @param inputTime The System.nanoTime() of the oldest key press the frame is the first to show,
+     *                  or 0 if it shows no new input.
+     */
+    public static void recordFrame(long nanos, long inputTime) {
+        frameTime.record(nanos);
+        if (inputTime != 0) inputLatency.record(System.nanoTime() - inputTime);
+    }
+
+    /**
+     * Records a loaded asset.
+     *
+     * @param nanos How long reading and decoding the asset took.
+     */
+    public static void recordAssetLoad(long nanos) {
+        assetLoadTime.record(nanos);
+    }
+
+    /**
+     * Describes the metrics recorded so far in one line.
+     *
+     * @return The summary.
+     */
+    public static String getSummary() {
+        return String.format("metrics: moves=%d pushes=%d deaths=%d portals=%d portalErrors=%d"
+                        + " move p50/p99=%.2f/%.2f us frames=%d frame p50/p99=%.2f/%.2f ms"
+                        + " input p50/p99=%.2f/%.2f ms assets=%d max=%.2f ms",
+                moves.sum(), pushes.sum(), deaths.sum(), portalTraversals.sum(), portalErrors.sum(),
+                moveTime.percentileMillis(50) * 1000, moveTime.percentileMillis(99) * 1000,
+                frameTime.getCount(), frameTime.percentileMillis(50), frameTime.percentileMillis(99),
+                inputLatency.percentileMillis(50), inputLatency.percentileMillis(99),
+                assetLoadTime.getCount(), assetLoadTime.getMax() / 1e6);
+    }
+
+    @Override
+    public long getMoves() {
+        return moves.sum();
+    }
+
+    @Override
+    public long getPushes() {
+        return pushes.sum();
+    }
+
+    @Override
+    public long getDeaths() {
+        return deaths.sum();
+    }
+
+    @Override
+    public long getPortalTraversals() {
+        return portalTraversals.sum();
+    }
+
+    @Override
+    public long getPortalErrors() {
+        return portalErrors.sum();
+    }
+
+    @Override
+    public double getMoveTimeP50Micros() {
+        return moveTime.percentileMillis(50) * 1000;
+    }
+
+    @Override
+    public double getMoveTimeP99Micros() {
+        return moveTime.percentileMillis(99) * 1000;
+    }
+
+    @Override
+    public long getFrames() {
+        return frameTime.getCount();
+    }
+
+    @Override
+    public double getFrameTimeP50Millis() {
+        return frameTime.percentileMillis(50);
+    }
+
+    @Override
+    public double getFrameTimeP99Millis() {
+        return frameTime.percentileMillis(99);
+    }
+
+    @Override
+    public double getInputLatencyP50Millis() {
+        return inputLatency.percentileMillis(50);
+    }
+
+    @Override
+    public double getInputLatencyP99Millis() {
+        return inputLatency.percentileMillis(99);
+    }
+
+    @Override
+    public long getAssetLoads() {
+        return assetLoadTime.getCount();
+    }
+
+    @Override
+    public double getAssetLoadMaxMillis() {
+        return assetLoadTime.getMax() / 1e6;
+    }
+
+    @Override
+    public void reset() {
+        moves.reset();
+        pushes.reset();
+        deaths.reset();
+        portalTraversals.reset();
+        portalErrors.reset();
+        moveTime.reset();
+        frameTime.reset();
+        inputLatency.reset();
+        assetLoadTime.reset();
+    }
+
+    /**
+     * A histogram of durations with one bucket per power of two nanoseconds.
+     */
+    private static final class Histogram {
+        // Bucket i counts durations from 2^i to 2^(i+1) - 1 nanoseconds; bucket 0 also holds 0.
+        private final LongAdder[] buckets = new LongAdder[64];
+        private final AtomicLong max = new AtomicLong();
+
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+        }
+
+        void record(long nanos) {
+            if (nanos < 0) nanos = 0;
+            buckets[63 - Long.numberOfLeadingZeros(nanos | 1)].increment();
+            if (nanos > max.get()) max.accumulateAndGet(nanos, Math::max);
+        }
+
+        long getCount() {
+            long count = 0;
+            for (LongAdder bucket : buckets) count += bucket.sum();
+            return count;
+        }
+
+        long getMax() {
+            return max.get();
+        }
+
+        /**
+         * Gets the upper bound of the bucket holding a percentile, capped at the maximum.
+         *
+         * @return The percentile in milliseconds, or 0 if nothing was recorded.
+         */
+        double percentileMillis(int percent) {
+            long[] counts = new long[buckets.length];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets[i].sum();
+                total += counts[i];
+            }
+            if (total == 0) return 0;
+            long rank = (total * percent + 99) / 100;
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    long upper = i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+                    return Math.min(upper, max.get()) / 1e6;
+                }
+            }
+            return max.get() / 1e6;
+        }
+
+        void reset() {
+            for (LongAdder bucket : buckets) bucket.reset();
+            max.set(0);
+        }
+    }
+}
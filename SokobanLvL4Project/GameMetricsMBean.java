@@ -0,0 +1,83 @@
+/**
+ * The GameMetricsMBean interface is the JMX view of {@link GameMetrics}, registered as
+ * {@value GameMetrics#OBJECT_NAME}. Move times are reported in microseconds and all other times in
+ * milliseconds; percentiles are the upper
+ * bounds of power-of-two buckets, so they can be up to twice the true value.
+ */
+public interface GameMetricsMBean {
+
+    /**
+     * @return The number of moves processed, including blocked ones.
+     */
+    long getMoves();
+
+    /**
+     * @return The number of moves that pushed a box.
+     */
+    long getPushes();
+
+    /**
+     * @return The number of deaths in lava.
+     */
+    long getDeaths();
+
+    /**
+     * @return The number of moves that went through a portal.
+     */
+    long getPortalTraversals();
+
+    /**
+     * @return The number of blocked portal exits that reset the level.
+     */
+    long getPortalErrors();
+
+    /**
+     * @return The median time the game took to process a move.
+     */
+    double getMoveTimeP50Micros();
+
+    /**
+     * @return The 99th percentile of the time the game took to process a move.
+     */
+    double getMoveTimeP99Micros();
+
+    /**
+     * @return The number of frames drawn.
+     */
+    long getFrames();
+
+    /**
+     * @return The median time it took to draw a frame.
+     */
+    double getFrameTimeP50Millis();
+
+    /**
+     * @return The 99th percentile of the time it took to draw a frame.
+     */
+    double getFrameTimeP99Millis();
+
+    /**
+     * @return The median time from a key press until a frame showing its effect was drawn.
+     */
+    double getInputLatencyP50Millis();
+
+    /**
+     * @return The 99th percentile of the time from a key press until a frame showing its effect was drawn.
+     */
+    double getInputLatencyP99Millis();
+
+    /**
+     * @return The number of assets loaded.
+     */
+    long getAssetLoads();
+
+    /**
+     * @return The longest time an asset took to load.
+     */
+    double getAssetLoadMaxMillis();
+
+    /**
+     * Clears all counters and histograms.
+     */
+    void reset();
+}
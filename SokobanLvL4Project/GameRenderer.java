@@ -0,0 +1,371 @@
+/**
+ * The GameRenderer class draws {@link FrameSnapshot}s into an offscreen display area.
+ * It needs no window, so the game window and headless tools such as {@link RenderBenchmark}
+ * share the same drawing code.
+ *
+ * If only the player, boxes or coins moved since the last snapshot, the old objects are erased
+ * with their static tiles and the new ones drawn; the tiles that changed are reported so a window
+ * can repaint only those. Otherwise the full viewport is redrawn.
+ *
+ * The display area is never bigger than the level, and only the static tiles inside the camera
+ * window are read unless the whole level fits into the pre-rendered static layer.
+ */
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+public class GameRenderer {
+
+    /**
+     * Largest static layer, in pixels, that is pre-rendered (64 MB at 4 bytes per pixel).
+     * Bigger levels draw their static tiles per frame instead.
+     */
+    private static final long MAX_STATIC_LAYER_PIXELS = 16L * 1024 * 1024;
+
+    // The configuration of the screen the images are shown on, or null when running headless.
+    private final GraphicsConfiguration config;
+
+    // Pre-scaled and pre-composited sprite for each tile value.
+    private final SpriteCache sprites;
+
+    // The size of a tile in pixels.
+    private final int scale;
+
+    // Dimensions of the viewport in tiles.
+    private final int viewportWidth;
+    private final int viewportHeight;
+
+    // The image every frame is drawn into; the viewport, cut down to the size of the level.
+    private BufferedImage displayArea;
+
+    // Dimensions of the display area in tiles.
+    private int areaWidth;
+    private int areaHeight;
+
+    // The walls, floors, lava, checkpoints and portals of the whole level, or null if too large.
+    private BufferedImage staticLayer;
+
+    // The static tiles the static layer was rendered from, or null.
+    private ChunkedGrid staticLayerTiles;
+
+    // The snapshot currently shown in the display area.
+    private FrameSnapshot drawnSnapshot;
+
+    // The viewport tiles (y * viewportWidth + x) changed by the last partial update.
+    private int[] changedTiles = new int[16];
+    private int changedCount;
+
+    /**
+     * Constructor for the GameRenderer class. The game's sprites are taken from the {@link AssetManager}.
+     *
+     * @param viewportWidth  The number of tiles visible horizontally.
+     * @param viewportHeight The number of tiles visible vertically.
+     * @param scale          The size of a tile in pixels.
+     * @param config         The graphics configuration of the target screen, or null when running headless.
+     */
+    public GameRenderer(int viewportWidth, int viewportHeight, int scale, GraphicsConfiguration config) {
+        this.viewportWidth = viewportWidth;
+        this.viewportHeight = viewportHeight;
+        this.scale = scale;
+        this.config = config;
+        this.areaWidth = viewportWidth;
+        this.areaHeight = viewportHeight;
+        this.displayArea = new BufferedImage(viewportWidth * scale, viewportHeight * scale, BufferedImage.TYPE_INT_ARGB);
+
+        // Get the images for the game elements. They are usually preloaded while the menu is shown,
+        // and stay cached for every later window.
+        AssetManager.preload(AssetManager.GAME_SPRITES);
+        BufferedImage boxImage = AssetManager.get("box.png"); // Box image.
+        BufferedImage floorImage = AssetManager.get("floor.png"); // Floor image.
+        BufferedImage endPoint = AssetManager.get("box_target.png"); // Target image.
+        BufferedImage wallImage = AssetManager.get("wall1.png"); // Wall image.
+        BufferedImage playerImage = AssetManager.get("player.png"); // Player image.
+        BufferedImage coinImage = AssetManager.get("coin.png"); // Coin image.
+        BufferedImage lavaImage = AssetManager.get("lavav.png"); // Lava image.
+        BufferedImage portalPurple = AssetManager.get("PortalPurple.png"); // Purple portal image.
+        BufferedImage portalGreen = AssetManager.get("PortalGreen.png"); // Green portal image.
+
+        // Define the layers of every tile value once; the cache scales and composites them.
+        sprites = new SpriteCache(config);
+        sprites.define(0, floorImage); // Floor.
+        sprites.define(1, wallImage); // Wall.
+        sprites.define(2, floorImage, playerImage); // Player on floor.
+        sprites.define(3, floorImage, boxImage); // Box on floor.
+        sprites.define(4, endPoint); // Target.
+        sprites.define(5, floorImage, coinImage); // Coin on floor.
+        sprites.define(6, lavaImage); // Lava.
+        sprites.define(7, floorImage, portalPurple); // Purple portal on floor.
+        sprites.define(8, floorImage, portalGreen); // Green portal on floor.
+    }
+
+    /**
+     * Computes the camera offset along one axis that centers the player in the viewport without
+     * showing space beyond the edges of the level. A level smaller than the viewport starts at 0.
+     *
+     * @param player    The player's coordinate.
+     * @param viewport  The size of the viewport in tiles.
+     * @param levelSize The size of the level in tiles.
+     * @return The coordinate of the first visible tile.
+     */
+    public static int cameraOffset(int player, int viewport, int levelSize) {
+        int offset = player - viewport / 2;
+        if (offset > levelSize - viewport) offset = levelSize - viewport;
+        if (offset < 0) offset = 0;
+        return offset;
+    }
+
+    /**
+     * Draws a snapshot into the display area.
+     *
+     * @param frame The snapshot to draw.
+     * @return True if the whole display area was redrawn; false if only the tiles reported by
+     *         {@link #getChangedTileCount()} changed (none if the snapshot was already shown).
+     */
+    public boolean render(FrameSnapshot frame) {
+        changedCount = 0;
+        if (frame == null || frame == drawnSnapshot) return false;
+
+        boolean full = !frame.sameBackground(drawnSnapshot);
+        if (full) {
+            resizeDisplayArea(frame);
+        }
+
+        // Get the graphics context for the display area.
+        Graphics2D g2d = displayArea.createGraphics();
+        if (full) {
+            // Clear the display area with a black background.
+            g2d.setColor(Color.BLACK);
+            g2d.fillRect(0, 0, displayArea.getWidth(), displayArea.getHeight());
+            drawBackground(g2d, frame);
+        } else {
+            // Erase the objects of the previous frame.
+            eraseCell(g2d, drawnSnapshot, drawnSnapshot.getPlayerCell());
+            for (int i = 0; i < drawnSnapshot.getObjectCount(); i++) {
+                eraseCell(g2d, drawnSnapshot, drawnSnapshot.getObjectCell(i));
+            }
+        }
+
+        // Draw the boxes and coins, then the player.
+        for (int i = 0; i < frame.getObjectCount(); i++) {
+            drawObject(g2d, frame, frame.getObjectCell(i), frame.getObjectTile(i), !full);
+        }
+        drawObject(g2d, frame, frame.getPlayerCell(), Board.PLAYER, !full);
+
+        // Warn the player when a push made the level unsolvable until it is undone or reset.
+        // The text is drawn again after partial updates in case a redrawn tile lies beneath it.
+        if (frame.isHopeless()) {
+            g2d.setFont(new Font("Arial", Font.BOLD, 30));
+            g2d.setColor(Color.RED);
+            g2d.drawString("Deadlock! Press Z to undo or R to reset.", 20, 40);
+        }
+        g2d.dispose();
+        drawnSnapshot = frame;
+        return full;
+    }
+
+    /**
+     * Cuts the display area down to the part of the viewport the level can fill, replacing the
+     * image when the size changes.
+     *
+     * @param frame The snapshot about to be drawn.
+     */
+    private void resizeDisplayArea(FrameSnapshot frame) {
+        int width = Math.min(viewportWidth, frame.getLevelWidth());
+        int height = Math.min(viewportHeight, frame.getLevelHeight());
+        if (width == areaWidth && height == areaHeight) return;
+        areaWidth = width;
+        areaHeight = height;
+        displayArea = new BufferedImage(Math.max(1, width * scale), Math.max(1, height * scale), BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * Draws the static tiles inside the camera window, as one blit of the static layer if possible.
+     *
+     * @param g2d   The graphics context of the display area.
+     * @param frame The snapshot being drawn.
+     */
+    private void drawBackground(Graphics2D g2d, FrameSnapshot frame) {
+        if (frame.getStaticTiles() != staticLayerTiles) {
+            renderStaticLayer(frame);
+        }
+
+        // The part of the level inside the viewport, in tiles.
+        int left = Math.max(0, frame.getOffsetX());
+        int top = Math.max(0, frame.getOffsetY());
+        int right = Math.min(frame.getLevelWidth(), frame.getOffsetX() + areaWidth);
+        int bottom = Math.min(frame.getLevelHeight(), frame.getOffsetY() + areaHeight);
+        if (left >= right || top >= bottom) return;
+
+        if (staticLayer != null) {
+            // Copy the visible window of the static layer.
+            int dx = (left - frame.getOffsetX()) * scale;
+            int dy = (top - frame.getOffsetY()) * scale;
+            g2d.drawImage(staticLayer,
+                    dx, dy, dx + (right - left) * scale, dy + (bottom - top) * scale,
+                    left * scale, top * scale, right * scale, bottom * scale, null);
+        } else {
+            // Iterate over the tiles in the viewport; per-tile blits from the small sprites are
+            // cheaper than copying large pre-rendered images without hardware acceleration.
+            ChunkedGrid tiles = frame.getStaticTiles();
+            for (int y = top; y < bottom; y++) {
+                for (int x = left; x < right; x++) {
+                    drawSprite(g2d, tiles.get(x, y),
+                            (x - frame.getOffsetX()) * scale, (y - frame.getOffsetY()) * scale);
+                }
+            }
+        }
+    }
+
+    /**
+     * Renders the static tiles of a level into the static layer, once per level.
+     * Levels whose layer would exceed {@link #MAX_STATIC_LAYER_PIXELS} get no layer.
+     *
+     * @param frame A snapshot of the level.
+     */
+    private void renderStaticLayer(FrameSnapshot frame) {
+        staticLayerTiles = frame.getStaticTiles();
+        staticLayer = null;
+
+        int levelWidth = frame.getLevelWidth();
+        int levelHeight = frame.getLevelHeight();
+        if ((long) levelWidth * levelHeight * scale * scale > MAX_STATIC_LAYER_PIXELS) {
+            return;
+        }
+
+        BufferedImage layer = config != null
+                ? config.createCompatibleImage(levelWidth * scale, levelHeight * scale, Transparency.OPAQUE)
+                : new BufferedImage(levelWidth * scale, levelHeight * scale, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = layer.createGraphics();
+        for (int y = 0; y < levelHeight; y++) {
+            for (int x = 0; x < levelWidth; x++) {
+                drawSprite(g, staticLayerTiles.get(x, y), x * scale, y * scale);
+            }
+        }
+        g.dispose();
+        staticLayer = layer;
+    }
+
+    /**
+     * Redraws the static tile of a cell, removing the object that was drawn on it.
+     *
+     * @param g2d   The graphics context of the display area.
+     * @param frame The snapshot the object was drawn from.
+     * @param cell  The packed cell index.
+     */
+    private void eraseCell(Graphics2D g2d, FrameSnapshot frame, int cell) {
+        int x = cell % frame.getLevelWidth();
+        int y = cell / frame.getLevelWidth();
+        int screenX = x - frame.getOffsetX();
+        int screenY = y - frame.getOffsetY();
+        if (screenX < 0 || screenX >= areaWidth || screenY < 0 || screenY >= areaHeight) return;
+        drawSprite(g2d, frame.getStaticTiles().get(x, y), screenX * scale, screenY * scale);
+        markChanged(screenX, screenY);
+    }
+
+    /**
+     * Draws a player, box or coin.
+     *
+     * @param g2d    The graphics context of the display area.
+     * @param frame  The snapshot being drawn.
+     * @param cell   The packed cell index of the object.
+     * @param tile   The tile value of the object.
+     * @param record Whether to report the tile as changed.
+     */
+    private void drawObject(Graphics2D g2d, FrameSnapshot frame, int cell, int tile, boolean record) {
+        int screenX = cell % frame.getLevelWidth() - frame.getOffsetX();
+        int screenY = cell / frame.getLevelWidth() - frame.getOffsetY();
+        if (screenX < 0 || screenX >= areaWidth || screenY < 0 || screenY >= areaHeight) return;
+        drawSprite(g2d, tile, screenX * scale, screenY * scale);
+        if (record) {
+            markChanged(screenX, screenY);
+        }
+    }
+
+    /**
+     * Records a viewport tile changed by a partial update.
+     */
+    private void markChanged(int screenX, int screenY) {
+        if (changedCount == changedTiles.length) {
+            changedTiles = Arrays.copyOf(changedTiles, changedCount * 2);
+        }
+        changedTiles[changedCount++] = screenY * viewportWidth + screenX;
+    }
+
+    /**
+     * Draws the pre-composited sprite of a tile value in a single blit.
+     *
+     * @param g2d  The graphics context.
+     * @param tile The tile value.
+     * @param px   The x-coordinate in pixels.
+     * @param py   The y-coordinate in pixels.
+     */
+    private void drawSprite(Graphics2D g2d, int tile, int px, int py) {
+        BufferedImage sprite = sprites.get(tile, scale);
+        if (sprite != null) {
+            g2d.drawImage(sprite, px, py, null);
+        } else {
+            g2d.setColor(Color.PINK); // Draw unknown tile in pink.
+            g2d.fillRect(px, py, scale, scale);
+        }
+    }
+
+    /**
+     * Gets the number of viewport tiles changed by the last partial update.
+     *
+     * @return The number of changed tiles; tiles may be reported more than once.
+     */
+    public int getChangedTileCount() {
+        return changedCount;
+    }
+
+    /**
+     * Gets a viewport tile changed by the last partial update.
+     *
+     * @param i The index of the changed tile.
+     * @return The tile, as y * viewportWidth + x.
+     */
+    public int getChangedTile(int i) {
+        return changedTiles[i];
+    }
+
+    /**
+     * Gets the image every frame is drawn into. A new image is used when a full redraw changes
+     * the size of the display area.
+     *
+     * @return The display area.
+     */
+    public BufferedImage getDisplayArea() {
+        return displayArea;
+    }
+
+    /**
+     * Gets the size of a tile.
+     *
+     * @return The tile size in pixels.
+     */
+    public int getScale() {
+        return scale;
+    }
+
+    /**
+     * Gets the width of the viewport.
+     *
+     * @return The number of tiles visible horizontally.
+     */
+    public int getViewportWidth() {
+        return viewportWidth;
+    }
+
+    /**
+     * Gets the height of the viewport.
+     *
+     * @return The number of tiles visible vertically.
+     */
+    public int getViewportHeight() {
+        return viewportHeight;
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * The Level class holds one playable level: its title and its tile layout.
+ * Layouts use the same tile values as the game field, plus two combined values that only
+ * appear in level files: {@link Board#BOX_ON_CHECKPOINT} and {@link Board#PLAYER_ON_CHECKPOINT}.
+ * A level may declare which portals are linked; otherwise portals pair up in scan order.
+ */
+public class Level {
+
+    // The title shown when the level starts.
+    private final String title;
+
+    // The tile layout, indexed as tiles[y][x].
+    private final int[][] tiles;
+
+    // Explicit portal pairs as coordinates [x1, y1, x2, y2, ...], or null.
+    private final int[] portalLinks;
+
+    /**
+     * Constructor for the Level class. Portals are paired in scan order.
+     *
+     * @param title The title of the level.
+     * @param tiles The tile layout, indexed as tiles[y][x].
+     */
+    public Level(String title, int[][] tiles) {
+        this(title, tiles, null);
+    }
+
+    /**
+     * Constructor for the Level class with explicit portal pairs.
+     *
+     * @param title       The title of the level.
+     * @param tiles       The tile layout, indexed as tiles[y][x].
+     * @param portalLinks The portal pairs as coordinates [x1, y1, x2, y2, ...], or null for scan order.
+     */
+    public Level(String title, int[][] tiles, int[] portalLinks) {
+        this.title = title;
+        this.tiles = tiles;
+        this.portalLinks = portalLinks;
+    }
+
+    /**
+     * Gets the title of the level.
+     *
+     * @return The title.
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Gets the tile layout of the level.
+     *
+     * @return The layout, indexed as tiles[y][x].
+     */
+    public int[][] getTiles() {
+        return tiles;
+    }
+
+    /**
+     * Gets the explicit portal pairs of the level.
+     *
+     * @return The pairs as coordinates [x1, y1, x2, y2, ...], or null if portals pair in scan order.
+     */
+    public int[] getPortalLinks() {
+        return portalLinks;
+    }
+
+    /**
+     * Builds a board for the level.
+     *
+     * @return A new board in the level's initial state.
+     */
+    public Board createBoard() {
+        return new Board(tiles, portalLinks);
+    }
+
+    /**
+     * Gets the width of the level in tiles.
+     *
+     * @return The width.
+     */
+    public int getWidth() {
+        return tiles[0].length;
+    }
+
+    /**
+     * Gets the height of the level in tiles.
+     *
+     * @return The height.
+     */
+    public int getHeight() {
+        return tiles.length;
+    }
+}
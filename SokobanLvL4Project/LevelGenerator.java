@@ -0,0 +1,304 @@
+/**
+ * The LevelGenerator class creates large random levels for benchmarks and stress tests.
+ * The same seed and size always give the same level, no matter how many threads build it.
+ *
+ * Levels are laid out on a lattice with a period of four tiles, which makes every level solvable
+ * by construction:
+ * <ul>
+ *     <li>Rows with y % 4 == 0 hold obstacles: walls at x % 4 == 0 and walls, lava or portals at
+ *     x % 4 == 2. Obstacles never touch each other, so the floor around them stays connected.</li>
+ *     <li>Rows with y % 4 == 2 hold the boxes, each directly left of its checkpoint with free floor
+ *     on its left, so one push to the right solves it.</li>
+ *     <li>Odd rows are open floor with coins at x % 4 == 0, where they can never block a portal exit.</li>
+ * </ul>
+ * The player can walk along the odd rows to the left of every box without touching lava or a
+ * portal, so pushing every box once to the right solves the level.
+ *
+ * Rows are generated in bands of {@link #BAND_HEIGHT} on all cores; each band has its own random
+ * numbers and its own portal pairs.
+ */
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+public class LevelGenerator {
+
+    /**
+     * Number of rows generated together by one task; a multiple of the lattice period.
+     */
+    private static final int BAND_HEIGHT = 64;
+
+    /**
+     * Smallest supported width and height.
+     */
+    public static final int MIN_SIZE = 8;
+
+    /**
+     * Largest supported width and height.
+     */
+    public static final int MAX_SIZE = 4096;
+
+    // Percentages for the contents of a hazard slot (x % 4 == 2 in an obstacle row).
+    private static final int WALL_PERCENT = 30;
+    private static final int LAVA_PERCENT = 15;
+    private static final int PORTAL_PERCENT = 2;
+
+    // Percentage of wall slots (x % 4 == 0 in an obstacle row) that hold a wall.
+    private static final int PILLAR_PERCENT = 70;
+
+    // Percentages of box row positions starting a box, and of those boxes already on their checkpoint.
+    private static final int BOX_PERCENT = 12;
+    private static final int SOLVED_BOX_PERCENT = 20;
+
+    // Percentage of coin slots holding a coin.
+    private static final int COIN_PERCENT = 10;
+
+    /**
+     * Generates a level.
+     *
+     * @param seed   The seed; equal seeds and sizes give equal levels.
+     * @param width  The width in tiles, from {@link #MIN_SIZE} to {@link #MAX_SIZE}.
+     * @param height The height in tiles, from {@link #MIN_SIZE} to {@link #MAX_SIZE}.
+     * @return The level, with explicit portal links.
+     * @throws IllegalArgumentException if a size is out of range.
+     */
+    public static Level generate(long seed, int width, int height) {
+        if (width < MIN_SIZE || width > MAX_SIZE || height < MIN_SIZE || height > MAX_SIZE) {
+            throw new IllegalArgumentException("Level size out of range: " + width + "x" + height);
+        }
+        int[][] tiles = new int[height][];
+        int bands = (height + BAND_HEIGHT - 1) / BAND_HEIGHT;
+
+        // Fill the bands in parallel; each returns the links of its portals.
+        int[][] bandLinks = IntStream.range(0, bands).parallel()
+                .mapToObj(band -> fillBand(tiles, width, band, new SplittableRandom(seed * 0x9E3779B97F4A7C15L + band)))
+                .toArray(int[][]::new);
+        int linkCount = 0;
+        for (int[] links : bandLinks) linkCount += links.length;
+        int[] links = new int[linkCount];
+        int pos = 0;
+        for (int[] band : bandLinks) {
+            System.arraycopy(band, 0, links, pos, band.length);
+            pos += band.length;
+        }
+
+        // Put the player on an odd row and column, which are always plain floor.
+        SplittableRandom random = new SplittableRandom(seed);
+        int playerX = 1 + 2 * random.nextInt((width - 2) / 2);
+        int playerY = 1 + 2 * random.nextInt((height - 2) / 2);
+        tiles[playerY][playerX] = Board.PLAYER;
+
+        return new Level(title(seed, width, height), tiles, links.length > 0 ? links : null);
+    }
+
+    /**
+     * Names a generated level after its size and seed.
+     */
+    private static String title(long seed, int width, int height) {
+        return "Generated " + width + "x" + height + " #" + seed;
+    }
+
+    /**
+     * Fills the rows of one band.
+     *
+     * @return The portal links of the band as [x1, y1, x2, y2, ...].
+     */
+    private static int[] fillBand(int[][] tiles, int width, int band, SplittableRandom random) {
+        int height = tiles.length;
+        int[] portals = new int[16]; // Unpaired portal positions as [x, y, ...].
+        int portalCount = 0;
+        int[] links = new int[16];
+        int linkCount = 0;
+
+        for (int y = band * BAND_HEIGHT; y < Math.min(height, (band + 1) * BAND_HEIGHT); y++) {
+            int[] row = new int[width];
+            tiles[y] = row;
+            if (y == 0 || y == height - 1) {
+                Arrays.fill(row, Board.WALL);
+                continue;
+            }
+            row[0] = Board.WALL;
+            row[width - 1] = Board.WALL;
+
+            if (y % 4 == 0) {
+                // Obstacle row: pillars and hazards, always separated by floor.
+                for (int x = 2; x < width - 2; x += 2) {
+                    int roll = random.nextInt(100);
+                    if (x % 4 == 0) {
+                        if (roll < PILLAR_PERCENT) row[x] = Board.WALL;
+                    } else if (roll < WALL_PERCENT) {
+                        row[x] = Board.WALL;
+                    } else if (roll < WALL_PERCENT + LAVA_PERCENT) {
+                        row[x] = Board.LAVA;
+                    } else if (roll < WALL_PERCENT + LAVA_PERCENT + PORTAL_PERCENT) {
+                        // Pair the portal with the previous unpaired one of the band.
+                        if (portalCount == 0) {
+                            row[x] = Board.PORTAL_PURPLE;
+                            portals[0] = x;
+                            portals[1] = y;
+                            portalCount = 1;
+                        } else {
+                            row[x] = Board.PORTAL_GREEN;
+                            if (linkCount + 4 > links.length) links = Arrays.copyOf(links, links.length * 2);
+                            links[linkCount++] = portals[0];
+                            links[linkCount++] = portals[1];
+                            links[linkCount++] = x;
+                            links[linkCount++] = y;
+                            portalCount = 0;
+                        }
+                    }
+                }
+            } else if (y % 4 == 2) {
+                // Box row: each box sits left of its checkpoint with room for the player on its left.
+                int x = 2;
+                while (x + 1 < width - 1) {
+                    if (random.nextInt(100) < BOX_PERCENT) {
+                        if (random.nextInt(100) < SOLVED_BOX_PERCENT) {
+                            row[x] = Board.BOX_ON_CHECKPOINT;
+                            x += 2;
+                        } else {
+                            row[x] = Board.BOX;
+                            row[x + 1] = Board.CHECKPOINT;
+                            x += 3;
+                        }
+                    } else {
+                        x++;
+                    }
+                }
+            } else {
+                // Open row: coins only where they cannot block a portal exit or a box.
+                for (int x = 4; x < width - 1; x += 4) {
+                    if (random.nextInt(100) < COIN_PERCENT) row[x] = Board.COIN;
+                }
+            }
+        }
+
+        // A portal left without a partner becomes floor again.
+        if (portalCount == 1) tiles[portals[1]][portals[0]] = Board.FLOOR;
+        return Arrays.copyOf(links, linkCount);
+    }
+
+    /**
+     * Creates a source of generated levels with random sizes. Levels are generated when they are
+     * requested, several at a time in parallel.
+     *
+     * @param seed    The seed of the whole pack.
+     * @param count   The number of levels.
+     * @param minSize The smallest width and height.
+     * @param maxSize The largest width and height.
+     * @return The levels.
+     */
+    public static LevelSource pack(long seed, int count, int minSize, int maxSize) {
+        return new GeneratedLevels(seed, count, minSize, maxSize);
+    }
+
+    /**
+     * Generated levels, produced in batches of one level per core.
+     */
+    private static final class GeneratedLevels implements LevelSource {
+        private final long seed;
+        private final int count;
+        private final int minSize;
+        private final int maxSize;
+        private final int batchSize = Runtime.getRuntime().availableProcessors();
+
+        // The current batch and the index of its first level.
+        private Level[] batch = new Level[0];
+        private int batchStart;
+
+        GeneratedLevels(long seed, int count, int minSize, int maxSize) {
+            this.seed = seed;
+            this.count = count;
+            this.minSize = minSize;
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+        @Override
+        public synchronized Level getLevel(int index) {
+            if (index < 0 || index >= count) {
+                throw new IllegalArgumentException("Invalid level: " + index);
+            }
+            if (index < batchStart || index >= batchStart + batch.length) {
+                batchStart = index;
+                batch = IntStream.range(index, Math.min(count, index + batchSize)).parallel()
+                        .mapToObj(this::create)
+                        .toArray(Level[]::new);
+            }
+            return batch[index - batchStart];
+        }
+
+        @Override
+        public String getTitle(int index) {
+            if (index < 0 || index >= count) {
+                throw new IllegalArgumentException("Invalid level: " + index);
+            }
+            int[] size = size(index);
+            return title(seed * 31 + index, size[0], size[1]);
+        }
+
+        /**
+         * Generates one level; its size is derived from the seed of the pack and its index.
+         */
+        private Level create(int index) {
+            int[] size = size(index);
+            return generate(seed * 31 + index, size[0], size[1]);
+        }
+
+        /**
+         * Picks the width and height of a level from the seed of the pack and its index.
+         */
+        private int[] size(int index) {
+            SplittableRandom random = new SplittableRandom(seed * 31 + index);
+            int width = minSize + random.nextInt(maxSize - minSize + 1);
+            int height = minSize + random.nextInt(maxSize - minSize + 1);
+            return new int[]{width, height};
+        }
+    }
+
+    /**
+     * Generates a level pack. The format follows the file extension: binary for
+     * {@value BinaryLevelPack#EXTENSION}, XSB otherwise.
+     *
+     * @param args The output file, the number of levels, and optionally the smallest and largest
+     *             width and height (default 100 and 1024) and the seed (default 1).
+     * @throws IOException if the file cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: LevelGenerator <output.xsb|output" + BinaryLevelPack.EXTENSION
+                    + "> <count> [minSize] [maxSize] [seed]");
+            return;
+        }
+        Path output = Paths.get(args[0]);
+        int count = Integer.parseInt(args[1]);
+        int minSize = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int maxSize = args.length > 3 ? Integer.parseInt(args[3]) : 1024;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+        if (minSize < MIN_SIZE || maxSize > MAX_SIZE || minSize > maxSize) {
+            throw new IllegalArgumentException("Sizes must satisfy " + MIN_SIZE + " <= minSize <= maxSize <= " + MAX_SIZE);
+        }
+
+        long start = System.nanoTime();
+        LevelSource levels = pack(seed, count, minSize, maxSize);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output))) {
+            if (output.toString().endsWith(BinaryLevelPack.EXTENSION)) {
+                BinaryLevelPack.write(levels, out);
+            } else {
+                XsbLevelPack.write(levels, out);
+            }
+        }
+        System.out.printf("Wrote %d levels (%d bytes) to %s in %.1f s%n",
+                count, Files.size(output), output, (System.nanoTime() - start) / 1e9);
+    }
+}
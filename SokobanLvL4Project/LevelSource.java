@@ -0,0 +1,64 @@
+/**
+ * The LevelSource interface provides a contract for collections of levels, such as the built-in
+ * levels or a level pack loaded from a file.
+ * Implementations may load levels lazily, so only the requested level needs to be parsed.
+ */
+import java.io.IOException;
+import java.nio.file.Path;
+
+public interface LevelSource {
+
+    /**
+     * Gets the number of levels in the source.
+     *
+     * @return The number of levels.
+     */
+    int size();
+
+    /**
+     * Loads a level.
+     *
+     * @param index The index of the level, starting at 0.
+     * @return The level.
+     * @throws IllegalArgumentException if the index is invalid.
+     */
+    Level getLevel(int index);
+
+    /**
+     * Gets the title of a level. Sources that can find the title without building the level
+     * should override this.
+     *
+     * @param index The index of the level, starting at 0.
+     * @return The level title.
+     * @throws IllegalArgumentException if the index is invalid.
+     */
+    default String getTitle(int index) {
+        return getLevel(index).getTitle();
+    }
+
+    /**
+     * Checks whether a level with the given index exists. Lazy sources can answer this
+     * without counting all levels.
+     *
+     * @param index The index of the level.
+     * @return True if the level exists.
+     */
+    default boolean hasLevel(int index) {
+        return index >= 0 && index < size();
+    }
+
+    /**
+     * Opens a level pack file, choosing the format by its extension: binary packs end in
+     * {@link BinaryLevelPack#EXTENSION}, everything else is read as XSB text.
+     *
+     * @param file The pack file.
+     * @return The level pack.
+     * @throws IOException if the file cannot be opened.
+     */
+    static LevelSource open(Path file) throws IOException {
+        if (file.toString().endsWith(BinaryLevelPack.EXTENSION)) {
+            return new BinaryLevelPack(file);
+        }
+        return new XsbLevelPack(file);
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * The LevelValidator class solves every built-in level headlessly and reports the solution length.
+ * It is used to make sure every level we ship is solvable.
+ */
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+public class LevelValidator {
+
+    /**
+     * Solves all built-in levels and prints one line per level.
+     * Exits with status 1 if any level could not be solved.
+     *
+     * @param args Optionally "--pack" followed by the path of an XSB or binary level pack to validate instead
+     *             of the built-in levels, then either an optional heuristic weight for the A* solver (default 1.0, which gives
+     *             optimal solutions), "--ida" followed by an optional weight to use IDA* instead of A*,
+     *             or "--parallel" followed by an optional thread count to use the multi-core solver.
+     */
+    public static void main(String[] args) throws IOException {
+        LevelSource source = Game.builtInLevels();
+        if (args.length > 1 && args[0].equals("--pack")) {
+            source = LevelSource.open(Paths.get(args[1]));
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
+
+        boolean parallel = args.length > 0 && args[0].equals("--parallel");
+        boolean ida = args.length > 0 && args[0].equals("--ida");
+        if (ida) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        double weight = 1.0;
+        if (parallel && args.length > 1) {
+            threads = Integer.parseInt(args[1]);
+        } else if (!parallel && args.length > 0) {
+            weight = Double.parseDouble(args[0]);
+        }
+
+        boolean allSolved = true;
+        for (int i = 0; source.hasLevel(i); i++) {
+            Level level = source.getLevel(i);
+            Solution solution;
+            ParallelSolver parallelSolver = null;
+            if (parallel) {
+                parallelSolver = new ParallelSolver(level.getTiles(), level.getPortalLinks(), threads);
+                solution = parallelSolver.solve();
+            } else {
+                Solver solver = new Solver(level.getTiles(), level.getPortalLinks()).setWeight(weight);
+                solution = ida ? solver.solveIda() : solver.solve();
+            }
+
+            System.out.println("Level " + (i + 1) + ": " + solution);
+            if (solution.isSolved()) {
+                System.out.println("    " + solution.getMoves());
+            } else {
+                allSolved = false;
+            }
+            if (parallelSolver != null) {
+                System.out.println("    " + parallelSolver.getThreadReport().replace("\n", "\n    "));
+            }
+        }
+        if (!allSolved) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * The MoveHistory class stores the moves of the current attempt as compact deltas for undo and redo.
+ * Each move takes four ints (16 bytes): the player's start and end cells, and the box's start and
+ * end cells if a box was pushed. The highest bit of the end cell marks a collected coin and the
+ * two bits below the highest bit of the start cell hold the direction of the move.
+ * Undoing or redoing a move only touches the cells in its delta, instead of copying the board.
+ * The history is unbounded, so every move of an attempt can be undone; it is cleared when the
+ * attempt ends.
+ */
+import java.util.Arrays;
+
+public class MoveHistory {
+
+    /**
+     * Number of ints stored per move.
+     */
+    private static final int STRIDE = 4;
+
+    /**
+     * Flag bit marking that the move collected a coin.
+     */
+    private static final int COIN_FLAG = 1 << 31;
+
+    /**
+     * Position of the two direction bits in the start cell.
+     */
+    private static final int DIR_SHIFT = 29;
+
+    /**
+     * Mask selecting the cell index without the direction bits.
+     */
+    private static final int CELL_MASK = (1 << DIR_SHIFT) - 1;
+
+    // The recorded deltas, STRIDE ints per move.
+    private int[] deltas = new int[STRIDE * 64];
+
+    // Number of moves that are currently applied (the undo position).
+    private int size;
+
+    // Number of recorded moves, including the ones that were undone and can be redone.
+    private int limit;
+
+    /**
+     * Records a move. Any undone moves that could have been redone are discarded.
+     *
+     * @param dir        The direction of the move.
+     * @param playerFrom The cell the player left.
+     * @param playerTo   The cell the player arrived on.
+     * @param boxFrom    The cell the pushed box left, or -1 if no box moved.
+     * @param boxTo      The cell the pushed box arrived on, or -1 if no box moved.
+     * @param coin       Whether the move collected a coin on the player's new cell.
+     */
+    public void record(int dir, int playerFrom, int playerTo, int boxFrom, int boxTo, boolean coin) {
+        int i = size * STRIDE;
+        if (i + STRIDE > deltas.length) {
+            deltas = Arrays.copyOf(deltas, deltas.length * 2);
+        }
+        deltas[i] = playerFrom | dir << DIR_SHIFT;
+        deltas[i + 1] = coin ? playerTo | COIN_FLAG : playerTo;
+        deltas[i + 2] = boxFrom;
+        deltas[i + 3] = boxTo;
+        size++;
+        limit = size;
+    }
+
+    /**
+     * Steps back one move and returns its index, so its delta can be read and reverted.
+     *
+     * @return The index of the undone move, or -1 if there is nothing to undo.
+     */
+    public int undo() {
+        return size > 0 ? --size : -1;
+    }
+
+    /**
+     * Steps forward one move and returns its index, so its delta can be read and applied again.
+     *
+     * @return The index of the redone move, or -1 if there is nothing to redo.
+     */
+    public int redo() {
+        return size < limit ? size++ : -1;
+    }
+
+    /**
+     * Forgets all moves, for example after a reset or a death.
+     */
+    public void clear() {
+        size = 0;
+        limit = 0;
+    }
+
+    /**
+     * Gets the number of moves that are currently applied.
+     *
+     * @return The number of moves that can be undone.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the cell the player left in a recorded move.
+     */
+    public int playerFrom(int move) {
+        return deltas[move * STRIDE] & CELL_MASK;
+    }
+
+    /**
+     * Gets the direction of a recorded move.
+     */
+    public int direction(int move) {
+        return deltas[move * STRIDE] >>> DIR_SHIFT;
+    }
+
+    /**
+     * Gets the cell the player arrived on in a recorded move.
+     */
+    public int playerTo(int move) {
+        return deltas[move * STRIDE + 1] & ~COIN_FLAG;
+    }
+
+    /**
+     * Gets the cell the box left in a recorded move, or -1.
+     */
+    public int boxFrom(int move) {
+        return deltas[move * STRIDE + 2];
+    }
+
+    /**
+     * Gets the cell the box arrived on in a recorded move, or -1.
+     */
+    public int boxTo(int move) {
+        return deltas[move * STRIDE + 3];
+    }
+
+    /**
+     * Checks whether a recorded move collected a coin.
+     */
+    public boolean collectedCoin(int move) {
+        return (deltas[move * STRIDE + 1] & COIN_FLAG) != 0;
+    }
+}
@@ -0,0 +1,312 @@
+/**
+ * The ParallelSolver class searches for a shortest solution on all cores.
+ * It runs a level-by-level breadth-first search: each frontier is split into fork/join tasks
+ * that idle workers steal from each other, and all workers share one concurrent visited-state set.
+ * Every move costs one, so the first solution found is optimal in moves.
+ * Moves that start the level over are never taken, as in {@link Solver}, so both solvers search the same states.
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ParallelSolver {
+
+    /**
+     * Number of frontier entries a task expands itself before splitting the work.
+     */
+    private static final int SPLIT_THRESHOLD = 256;
+
+    // The level layout; every worker builds its own board from it.
+    private final int[][] layout;
+
+    // Explicit portal pairs as coordinates, or null for scan order.
+    private final int[] portalLinks;
+
+    // Push distance table and relevant coin mask shared (read-only) by all workers.
+    private final int[] pushDistance;
+    private final long[] relevantCoins;
+
+    // Number of worker threads.
+    private final int parallelism;
+
+    // The maximum number of states to expand before giving up.
+    private long maxStates = 50_000_000;
+
+    // Per-thread statistics of the last search.
+    private final List<Worker> workers = new ArrayList<>();
+    private long lastNanos;
+
+    /**
+     * Constructor for the ParallelSolver class.
+     *
+     * @param layout      The level layout to solve, indexed as layout[y][x].
+     * @param parallelism The number of worker threads.
+     */
+    public ParallelSolver(int[][] layout, int parallelism) {
+        this(layout, null, parallelism);
+    }
+
+    /**
+     * Constructor for the ParallelSolver class for a level with explicit portal pairs.
+     *
+     * @param layout      The level layout to solve, indexed as layout[y][x].
+     * @param portalLinks The portal pairs as coordinates [x1, y1, x2, y2, ...], or null for scan order.
+     * @param parallelism The number of worker threads.
+     */
+    public ParallelSolver(int[][] layout, int[] portalLinks, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        this.layout = layout;
+        this.portalLinks = portalLinks;
+        this.parallelism = parallelism;
+        Board board = new Board(layout, portalLinks);
+        this.pushDistance = new DeadlockDetector(board).getPushDistances();
+        this.relevantCoins = Solver.relevantCoinMask(board);
+    }
+
+    /**
+     * Sets the maximum number of states the search may expand.
+     *
+     * @param maxStates The state limit.
+     * @return This solver.
+     */
+    public ParallelSolver setMaxStates(long maxStates) {
+        this.maxStates = maxStates;
+        return this;
+    }
+
+    /**
+     * Searches for a solution with the minimum number of moves.
+     *
+     * @return The solution, which reports unsolved if the level has no solution or the state limit was hit.
+     */
+    public Solution solve() {
+        long startTime = System.nanoTime();
+        workers.clear();
+
+        // Create the root entry from the initial board state.
+        Board board = new Board(layout, portalLinks);
+        long[] rootState = new long[board.stateSize()];
+        board.saveState(rootState);
+        Solver.maskCoins(rootState, relevantCoins);
+        Entry root = new Entry(rootState, null, -1, false, 0);
+        if (Solver.heuristic(rootState, pushDistance) < 0) {
+            return finish(null, startTime);
+        }
+        if (board.isSolved()) {
+            return finish(root, startTime);
+        }
+
+        Set<Entry> visited = ConcurrentHashMap.newKeySet();
+        visited.add(root);
+        AtomicReference<Entry> goal = new AtomicReference<>();
+        ConcurrentLinkedQueue<Worker> allWorkers = new ConcurrentLinkedQueue<>();
+        ThreadLocal<Worker> local = ThreadLocal.withInitial(() -> {
+            Worker w = new Worker(new Board(layout, portalLinks));
+            allWorkers.add(w);
+            return w;
+        });
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            Entry[] frontier = {root};
+            AtomicLong expanded = new AtomicLong();
+            while (frontier.length > 0 && goal.get() == null && expanded.get() < maxStates) {
+                // Expand the whole frontier in parallel.
+                pool.invoke(new ExpandTask(frontier, 0, frontier.length, visited, goal, expanded, local));
+
+                // Gather the next frontier from the workers' local buffers.
+                int size = 0;
+                for (Worker w : allWorkers) size += w.next.size();
+                Entry[] next = new Entry[size];
+                int i = 0;
+                for (Worker w : allWorkers) {
+                    for (Entry e : w.next) next[i++] = e;
+                    w.next.clear();
+                }
+                frontier = next;
+            }
+        } finally {
+            pool.shutdown();
+        }
+        workers.addAll(allWorkers);
+        return finish(goal.get(), startTime);
+    }
+
+    /**
+     * Builds the solution object and records the search time.
+     */
+    private Solution finish(Entry goal, long startTime) {
+        lastNanos = System.nanoTime() - startTime;
+        long expanded = 0;
+        for (Worker w : workers) expanded += w.expanded;
+        return new Solution(goal == null ? null : goal.path(), expanded, lastNanos);
+    }
+
+    /**
+     * Returns the number of states each worker thread expanded during the last search.
+     *
+     * @return The expanded states per thread.
+     */
+    public long[] getStatesPerThread() {
+        long[] result = new long[workers.size()];
+        for (int i = 0; i < result.length; i++) result[i] = workers.get(i).expanded;
+        return result;
+    }
+
+    /**
+     * Returns a report line with the states per second achieved by each worker thread in the last search.
+     *
+     * @return The report.
+     */
+    public String getThreadReport() {
+        double seconds = lastNanos / 1e9;
+        StringBuilder sb = new StringBuilder();
+        long[] states = getStatesPerThread();
+        long total = 0;
+        for (int i = 0; i < states.length; i++) {
+            sb.append(String.format("thread %d: %.0f states/s%n", i, states[i] / seconds));
+            total += states[i];
+        }
+        sb.append(String.format("total: %.0f states/s on %d threads", total / seconds, states.length));
+        return sb.toString();
+    }
+
+    /**
+     * Per-thread search state: a private board to apply moves on, a deadlock detector for it
+     * and a buffer for new frontier entries.
+     */
+    private static final class Worker {
+        final Board board;
+        final DeadlockDetector deadlocks;
+        final long[] buffer;
+        final List<Entry> next = new ArrayList<>();
+        long expanded;
+
+        Worker(Board board) {
+            this.board = board;
+            this.deadlocks = new DeadlockDetector(board);
+            this.buffer = new long[board.stateSize()];
+        }
+    }
+
+    /**
+     * Expands a slice of the frontier, splitting it while it is large so idle workers can steal half.
+     * Each slice reserves its states from the shared budget first, so the search stops within a layer
+     * once the state limit is reached.
+     */
+    private final class ExpandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Entry[] frontier;
+        private final int from;
+        private final int to;
+        private final Set<Entry> visited;
+        private final AtomicReference<Entry> goal;
+        private final AtomicLong expanded;
+        private final ThreadLocal<Worker> local;
+
+        ExpandTask(Entry[] frontier, int from, int to, Set<Entry> visited,
+                   AtomicReference<Entry> goal, AtomicLong expanded, ThreadLocal<Worker> local) {
+            this.frontier = frontier;
+            this.from = from;
+            this.to = to;
+            this.visited = visited;
+            this.goal = goal;
+            this.expanded = expanded;
+            this.local = local;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SPLIT_THRESHOLD) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ExpandTask(frontier, from, mid, visited, goal, expanded, local),
+                        new ExpandTask(frontier, mid, to, visited, goal, expanded, local));
+                return;
+            }
+
+            // Take this slice's states from the budget; only the part that fits is expanded.
+            long before = expanded.getAndAdd(to - from);
+            if (before >= maxStates) return;
+            int end = (int) Math.min(to, from + (maxStates - before));
+
+            Worker w = local.get();
+            Board board = w.board;
+            for (int i = from; i < end && goal.get() == null; i++) {
+                Entry entry = frontier[i];
+                w.expanded++;
+                for (int dir = 0; dir < 4; dir++) {
+                    board.loadState(entry.state);
+                    int result = board.move(dir);
+                    if (!Solver.isSuccessor(result)) continue;
+                    if (result == Board.PUSHED && w.deadlocks.isFreezeDeadlock(board.getLastBoxTo())) continue;
+
+                    board.saveState(w.buffer);
+                    Solver.maskCoins(w.buffer, relevantCoins);
+                    if (Solver.heuristic(w.buffer, pushDistance) < 0) continue; // Dead square.
+
+                    Entry child = new Entry(w.buffer.clone(), entry, dir, result == Board.PUSHED, entry.depth + 1);
+                    if (!visited.add(child)) continue; // Another worker got here first.
+
+                    if (board.isSolved()) {
+                        goal.compareAndSet(null, child);
+                        return;
+                    }
+                    w.next.add(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * A visited state with a link to the state it was reached from. Entries are equal when their states are equal.
+     */
+    private static final class Entry {
+        final long[] state;
+        final Entry parent;
+        final int dir;
+        final boolean push;
+        final int depth;
+        private final int hash;
+
+        Entry(long[] state, Entry parent, int dir, boolean push, int depth) {
+            this.state = state;
+            this.parent = parent;
+            this.dir = dir;
+            this.push = push;
+            this.depth = depth;
+            this.hash = Arrays.hashCode(state);
+        }
+
+        /**
+         * Rebuilds the LURD move sequence leading to this entry.
+         */
+        String path() {
+            char[] moves = new char[depth];
+            for (Entry e = this; e.parent != null; e = e.parent) {
+                char c = Solution.DIR_CHARS[e.dir];
+                moves[e.depth - 1] = e.push ? Character.toUpperCase(c) : c;
+            }
+            return new String(moves);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Entry && Arrays.equals(state, ((Entry) o).state);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * The PortalTable class links every portal to its partner and precomputes, for each direction
+ * of travel, the tile a traveller leaves the partner on.
+ * Exits that can never be used (off the board, or onto anything but plain floor) are stored as
+ * -1, so a move only has to check the dynamic objects on a valid exit.
+ *
+ * Entries live in an open-addressing table keyed by cell, so lookups take constant time and
+ * the table stays small even on huge boards with few portals.
+ */
+import java.util.Arrays;
+
+public class PortalTable {
+
+    // Marks an empty slot in the table.
+    private static final int EMPTY = -1;
+
+    // Slot mask; the table size is a power of two.
+    private final int mask;
+
+    // The portal cell of each slot, or EMPTY.
+    private final int[] keys;
+
+    // The partner portal of each slot, or -1 if the portal is unpaired.
+    private final int[] partners;
+
+    // The exit cell for each slot and direction (slot * 4 + dir), or -1 if it can never be used.
+    private final int[] exits;
+
+    /**
+     * Builds the table for a board.
+     *
+     * @param tiles  The static tile of every cell.
+     * @param width  The width of the board.
+     * @param height The height of the board.
+     * @param pairs  Explicit portal pairs as cell indices [a0, b0, a1, b1, ...], or null to pair
+     *               the n-th purple portal with the n-th green portal in scan order.
+     * @throws IllegalArgumentException if a pair is incomplete, names a cell that is not a portal,
+     *                                  joins two portals of the same colour, or a portal is linked twice.
+     */
+    public PortalTable(byte[] tiles, int width, int height, int[] pairs) {
+        // Collect the portals in scan order.
+        int purpleCount = 0;
+        int greenCount = 0;
+        for (byte tile : tiles) {
+            if (tile == Board.PORTAL_PURPLE) purpleCount++;
+            else if (tile == Board.PORTAL_GREEN) greenCount++;
+        }
+        int[] purple = new int[purpleCount];
+        int[] green = new int[greenCount];
+        int p = 0;
+        int g = 0;
+        for (int cell = 0; cell < tiles.length; cell++) {
+            if (tiles[cell] == Board.PORTAL_PURPLE) purple[p++] = cell;
+            else if (tiles[cell] == Board.PORTAL_GREEN) green[g++] = cell;
+        }
+
+        // Size the table for a load factor of at most one half.
+        int capacity = Integer.highestOneBit(Math.max(1, purpleCount + greenCount) * 2 - 1) << 1;
+        mask = capacity - 1;
+        keys = new int[capacity];
+        partners = new int[capacity];
+        exits = new int[capacity * 4];
+        Arrays.fill(keys, EMPTY);
+        for (int cell : purple) insert(cell);
+        for (int cell : green) insert(cell);
+
+        // Link the portals, either as declared or in scan order.
+        if (pairs != null) {
+            if (pairs.length % 2 != 0) {
+                throw new IllegalArgumentException("Portal link is missing its second portal");
+            }
+            for (int i = 0; i < pairs.length; i += 2) {
+                link(pairs[i], pairs[i + 1]);
+                if (tiles[pairs[i]] == tiles[pairs[i + 1]]) {
+                    throw new IllegalArgumentException("Portal link must connect a purple and a green portal");
+                }
+            }
+        } else {
+            for (int i = 0; i < purpleCount && i < greenCount; i++) {
+                link(purple[i], green[i]);
+            }
+        }
+
+        // Precompute the exits of every paired portal.
+        for (int slot = 0; slot < capacity; slot++) {
+            if (keys[slot] == EMPTY || partners[slot] < 0) continue;
+            int partner = partners[slot];
+            int px = partner % width;
+            int py = partner / width;
+            for (int dir = 0; dir < 4; dir++) {
+                int x = px + Board.DX[dir];
+                int y = py + Board.DY[dir];
+                int exit = -1;
+                if (x >= 0 && x < width && y >= 0 && y < height && tiles[y * width + x] == Board.FLOOR) {
+                    exit = y * width + x;
+                }
+                exits[slot * 4 + dir] = exit;
+            }
+        }
+    }
+
+    /**
+     * Adds an unpaired portal to the table.
+     */
+    private void insert(int cell) {
+        int slot = mix(cell) & mask;
+        while (keys[slot] != EMPTY) slot = (slot + 1) & mask;
+        keys[slot] = cell;
+        partners[slot] = -1;
+        Arrays.fill(exits, slot * 4, slot * 4 + 4, -1);
+    }
+
+    /**
+     * Pairs two portals with each other. Each portal may only have one partner.
+     */
+    private void link(int a, int b) {
+        int slotA = slot(a);
+        int slotB = slot(b);
+        if (slotA < 0 || slotB < 0 || a == b) {
+            throw new IllegalArgumentException("Portal link must connect two different portals");
+        }
+        if (partners[slotA] >= 0 || partners[slotB] >= 0) {
+            throw new IllegalArgumentException("Portal is linked more than once");
+        }
+        partners[slotA] = b;
+        partners[slotB] = a;
+    }
+
+    /**
+     * Finds the slot of a portal cell.
+     *
+     * @return The slot, or -1 if the cell is not a portal.
+     */
+    private int slot(int cell) {
+        int slot = mix(cell) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == cell) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Spreads cell indices over the table so neighbouring portals do not cluster.
+     */
+    private static int mix(int cell) {
+        int h = cell * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the portal paired with the given portal.
+     *
+     * @param portalCell The cell of a portal.
+     * @return The cell of the partner portal, or -1 if the cell is not a paired portal.
+     */
+    public int partner(int portalCell) {
+        int slot = slot(portalCell);
+        return slot < 0 ? -1 : partners[slot];
+    }
+
+    /**
+     * Returns the tile a traveller entering a portal in a direction comes out on, if it is plain floor.
+     *
+     * @param portalCell The cell of the portal being entered.
+     * @param dir        The direction of travel.
+     * @return The exit cell, or -1 if the portal is unpaired or the exit can never be used.
+     */
+    public int exit(int portalCell, int dir) {
+        int slot = slot(portalCell);
+        return slot < 0 ? -1 : exits[slot * 4 + dir];
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * The RenderBenchmark class measures how long drawing a frame takes, without opening a window.
+ * A game is played with random moves and every resulting snapshot is drawn by a {@link GameRenderer}
+ * into its offscreen display area, the way the game window draws it.
+ *
+ * Viewports of 1920x1080 and 3840x2160 pixels are measured at tile sizes 64 and 128, on the
+ * largest built-in level (drawn from the pre-rendered static layer, mostly with partial updates)
+ * and on a large open board (scrolling, so every frame is a full redraw). Frames per second and
+ * the median and 99th percentile frame times are printed.
+ */
+import java.util.Arrays;
+import java.util.Random;
+
+public class RenderBenchmark {
+
+    /**
+     * Screen sizes in pixels, as width and height.
+     */
+    private static final int[][] VIEWPORTS = {{1920, 1080}, {3840, 2160}};
+
+    /**
+     * Tile sizes in pixels.
+     */
+    private static final int[] SCALES = {64, 128};
+
+    /**
+     * Side length of the open board.
+     */
+    private static final int OPEN_BOARD_SIZE = 256;
+
+    /**
+     * Runs all benchmarks and prints one line per viewport, tile size and level.
+     *
+     * @param args Optionally the number of measured frames (default 600), followed by the number of
+     *             warm-up frames (default 200).
+     */
+    public static void main(String[] args) {
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 600;
+        int warmup = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        // Pick the largest built-in level.
+        LevelSource builtIn = Game.builtInLevels();
+        int largest = 0;
+        for (int i = 1; i < builtIn.size(); i++) {
+            Level level = builtIn.getLevel(i);
+            Level best = builtIn.getLevel(largest);
+            if (level.getWidth() * level.getHeight() > best.getWidth() * best.getHeight()) largest = i;
+        }
+        LevelSource open = new OpenBoard();
+
+        System.out.printf("%-10s %5s %-10s %8s %10s %10s %10s%n",
+                "viewport", "scale", "level", "frames", "fps", "p50 ms", "p99 ms");
+        for (int[] viewport : VIEWPORTS) {
+            for (int scale : SCALES) {
+                run(viewport, scale, "level" + (largest + 1), builtIn, largest, frames, warmup);
+                run(viewport, scale, OPEN_BOARD_SIZE + "x" + OPEN_BOARD_SIZE, open, 0, frames, warmup);
+            }
+        }
+    }
+
+    /**
+     * Plays and draws one level and prints the frame statistics.
+     */
+    private static void run(int[] viewport, int scale, String name, LevelSource source, int index,
+                            int frames, int warmup) {
+        // The viewport holds as many whole tiles as fit on the screen, like the game window.
+        int viewportWidth = viewport[0] / scale;
+        int viewportHeight = viewport[1] / scale;
+        GameRenderer renderer = new GameRenderer(viewportWidth, viewportHeight, scale, null);
+        Game game = new Game(source, index);
+        Random random = new Random(42);
+
+        ChunkedGrid staticTiles = game.getStaticTiles();
+        int level = game.getCurrentLevel();
+        int generation = 0;
+        long[] times = new long[frames];
+        long total = 0;
+        for (int frame = -warmup; frame < frames; frame++) {
+            // One move per frame; start over when the level is stuck or left.
+            if (game.isHopeless() || game.getCurrentLevel() != level) {
+                game = new Game(source, index);
+                staticTiles = game.getStaticTiles();
+                generation++;
+            }
+            game.move(random.nextInt(4));
+
+            // Capture the snapshot exactly as the game window's logic thread does.
+            if (game.isFullRedrawNeeded()) generation++;
+            game.clearDirty();
+            FrameSnapshot snapshot = FrameSnapshot.capture(game, staticTiles, generation,
+                    GameRenderer.cameraOffset(game.getPlayerX(), viewportWidth, game.getRowCount()),
+                    GameRenderer.cameraOffset(game.getPlayerY(), viewportHeight, game.getColCount()),
+                    viewportWidth, viewportHeight, 0);
+
+            long start = System.nanoTime();
+            renderer.render(snapshot);
+            long time = System.nanoTime() - start;
+            if (frame >= 0) {
+                times[frame] = time;
+                total += time;
+            }
+        }
+
+        Arrays.sort(times);
+        System.out.printf("%-10s %5d %-10s %8d %10.1f %10.3f %10.3f%n",
+                viewport[0] + "x" + viewport[1], scale, name, frames,
+                frames / (total / 1e9), percentile(times, 50) / 1e6, percentile(times, 99) / 1e6);
+    }
+
+    /**
+     * Gets a percentile of sorted values.
+     */
+    private static long percentile(long[] sorted, int percent) {
+        int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /**
+     * A large open board with scattered walls, boxes and coins and the player in the middle.
+     */
+    private static final class OpenBoard implements LevelSource {
+
+        @Override
+        public int size() {
+            return 1;
+        }
+
+        @Override
+        public Level getLevel(int index) {
+            int size = OPEN_BOARD_SIZE;
+            int[][] tiles = new int[size][size];
+            Random random = new Random(size);
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    if (x == 0 || y == 0 || x == size - 1 || y == size - 1) {
+                        tiles[y][x] = Board.WALL;
+                        continue;
+                    }
+                    int roll = random.nextInt(100);
+                    if (roll < 4) tiles[y][x] = Board.WALL;
+                    else if (roll < 5) tiles[y][x] = Board.COIN;
+                    else if (roll < 6) tiles[y][x] = Board.BOX_ON_CHECKPOINT;
+                    else if (roll < 7) tiles[y][x] = Board.CHECKPOINT;
+                }
+            }
+            tiles[size / 2][size / 2] = Board.PLAYER;
+            return new Level("Open board", tiles);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/**
+ * The Replay class records the accepted moves of one attempt at a level in a compact format:
+ * two bits per move (the direction), together with the level id, the generator seed and the
+ * result the player claims (completion and collected coins).
+ *
+ * File layout (big-endian): magic "SKRP", version byte, level id (int), seed (long),
+ * move count (int), collected coins (int), completed flag (byte), then the packed moves,
+ * four moves per byte starting at the lowest bits.
+ */
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+public class Replay {
+
+    /**
+     * Magic number at the start of every replay file ("SKRP").
+     */
+    private static final int MAGIC = 0x534B5250;
+
+    /**
+     * Current file format version.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * File extension used for replay files.
+     */
+    public static final String EXTENSION = ".skr";
+
+    // Largest number of move bytes read before the buffer has to grow.
+    private static final int READ_CHUNK = 1 << 16;
+
+    // Identification of the level that was played.
+    private final int levelId;
+    private final long seed;
+
+    // The packed moves, four per byte.
+    private byte[] moves;
+    private int moveCount;
+
+    // The result claimed for the attempt.
+    private int coins;
+    private boolean completed;
+
+    /**
+     * Constructor for the Replay class.
+     *
+     * @param levelId The index of the level that is played.
+     * @param seed    The seed the level was generated with, or 0 for built-in levels.
+     *                The game only plays levels by index, so it always records 0.
+     */
+    public Replay(int levelId, long seed) {
+        this.levelId = levelId;
+        this.seed = seed;
+        this.moves = new byte[64];
+    }
+
+    /**
+     * Appends a move.
+     *
+     * @param dir The Board direction code of the move.
+     */
+    public void add(int dir) {
+        int index = moveCount >>> 2;
+        if (index >= moves.length) {
+            moves = Arrays.copyOf(moves, moves.length * 2);
+        }
+        int shift = (moveCount & 3) << 1;
+        moves[index] = (byte) ((moves[index] & ~(3 << shift)) | (dir << shift));
+        moveCount++;
+    }
+
+    /**
+     * Removes the last move, for example when it is undone.
+     */
+    public void removeLast() {
+        if (moveCount > 0) moveCount--;
+    }
+
+    /**
+     * Removes all moves, for example when the level is reset.
+     */
+    public void clear() {
+        moveCount = 0;
+        coins = 0;
+        completed = false;
+    }
+
+    /**
+     * Gets the direction of a move.
+     *
+     * @param i The index of the move.
+     * @return The Board direction code.
+     */
+    public int getMove(int i) {
+        return (moves[i >>> 2] >>> ((i & 3) << 1)) & 3;
+    }
+
+    /**
+     * Stores the result the attempt reached.
+     *
+     * @param completed Whether the level was completed.
+     * @param coins     The number of coins collected.
+     */
+    public void setResult(boolean completed, int coins) {
+        this.completed = completed;
+        this.coins = coins;
+    }
+
+    /**
+     * Writes the replay in the binary replay format.
+     *
+     * @param out The stream to write to.
+     * @throws IOException if writing fails.
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeInt(levelId);
+        data.writeLong(seed);
+        data.writeInt(moveCount);
+        data.writeInt(coins);
+        data.writeBoolean(completed);
+        data.write(moves, 0, (moveCount + 3) >>> 2);
+        data.flush();
+    }
+
+    /**
+     * Encodes the replay into a byte array.
+     *
+     * @return The encoded replay.
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(30 + moveCount / 4);
+        try {
+            write(out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // Cannot happen for an in-memory stream.
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads a replay written by {@link #write(OutputStream)}.
+     *
+     * @param in The stream to read from.
+     * @return The replay.
+     * @throws IOException if the stream is not a valid replay or ends before its last move.
+     */
+    public static Replay read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a replay file");
+        }
+        int version = data.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported replay version: " + version);
+        }
+        Replay replay = new Replay(data.readInt(), data.readLong());
+        int count = data.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid move count: " + count);
+        }
+        replay.coins = data.readInt();
+        replay.completed = data.readBoolean();
+
+        // Grow the buffer only as the moves actually arrive, so a forged move count in a short
+        // file fails with an EOFException instead of allocating for moves that are not there.
+        int length = (count + 3) >>> 2;
+        byte[] moves = new byte[Math.max(1, Math.min(length, READ_CHUNK))];
+        int read = 0;
+        while (read < length) {
+            if (read == moves.length) {
+                moves = Arrays.copyOf(moves, (int) Math.min(length, 2L * moves.length));
+            }
+            int n = Math.min(length, moves.length) - read;
+            data.readFully(moves, read, n);
+            read += n;
+        }
+        replay.moves = moves;
+        replay.moveCount = count;
+        return replay;
+    }
+
+    /**
+     * Gets the index of the level that was played.
+     *
+     * @return The level id.
+     */
+    public int getLevelId() {
+        return levelId;
+    }
+
+    /**
+     * Gets the seed the level was generated with.
+     *
+     * @return The seed, or 0 for built-in levels.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the number of recorded moves.
+     *
+     * @return The move count.
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Gets the number of coins the attempt claims to have collected.
+     *
+     * @return The coin count.
+     */
+    public int getCoins() {
+        return coins;
+    }
+
+    /**
+     * Checks whether the attempt claims to have completed the level.
+     *
+     * @return True if the level was completed.
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * The ReplayVerifier class replays recorded runs headlessly and checks that they are genuine:
+ * every move must be accepted by the game rules, and the completion, coin count and move count
+ * must match what the replay claims. Files are verified in parallel on all cores.
+ */
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class ReplayVerifier {
+
+    /**
+     * One board per level and thread, reset before every replay instead of being rebuilt.
+     */
+    private static final ThreadLocal<Board[]> BOARDS =
+            ThreadLocal.withInitial(() -> new Board[Game.getLevelCount()]);
+
+    /**
+     * Replays a run against the rules and checks the claimed result.
+     *
+     * @param replay The replay to check.
+     * @return null if the replay is valid; otherwise a description of the problem.
+     */
+    public static String verify(Replay replay) {
+        if (replay.getLevelId() < 0 || replay.getLevelId() >= Game.getLevelCount()) {
+            return "unknown level " + replay.getLevelId();
+        }
+        if (replay.getSeed() != 0) {
+            // Only built-in levels can be verified, and those are not generated.
+            return "unexpected seed " + replay.getSeed();
+        }
+        Board[] boards = BOARDS.get();
+        Board board = boards[replay.getLevelId()];
+        if (board == null) {
+            board = new Board(Game.getLevelLayout(replay.getLevelId()));
+            boards[replay.getLevelId()] = board;
+        } else {
+            board.reset();
+        }
+
+        int coins = 0;
+        int count = replay.getMoveCount();
+        for (int i = 0; i < count; i++) {
+            // The game switches to the next level as soon as it is solved, so no moves may follow.
+            if (board.isSolved()) {
+                return "moves continue after completion at move " + i;
+            }
+            int result = board.move(replay.getMove(i));
+            if (result == Board.BLOCKED) {
+                return "move " + i + " is not possible";
+            }
+            if (board.getLastCoin() >= 0) coins++;
+        }
+
+        if (board.isSolved() != replay.isCompleted()) {
+            return "completion mismatch: claimed " + replay.isCompleted() + ", actual " + board.isSolved();
+        }
+        if (coins != replay.getCoins()) {
+            return "coin mismatch: claimed " + replay.getCoins() + ", actual " + coins;
+        }
+        return null;
+    }
+
+    /**
+     * Verifies all replay files in the given directories (or single files) in parallel and prints
+     * the invalid ones together with the overall throughput.
+     * Exits with status 1 if any replay is invalid.
+     *
+     * @param args Replay files or directories containing replay files.
+     * @throws IOException if a directory cannot be listed.
+     */
+    public static void main(String[] args) throws IOException {
+        // Collect the replay files.
+        List<Path> files = new ArrayList<>();
+        for (String arg : args) {
+            Path path = Paths.get(arg);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> listing = Files.list(path)) {
+                    files.addAll(listing.filter(p -> p.toString().endsWith(Replay.EXTENSION))
+                            .collect(Collectors.toList()));
+                }
+            } else {
+                files.add(path);
+            }
+        }
+
+        AtomicInteger invalid = new AtomicInteger();
+        AtomicLong moves = new AtomicLong();
+        long start = System.nanoTime();
+
+        // Verify the files in parallel; each replay is independent.
+        files.parallelStream().forEach(file -> {
+            String problem;
+            try (InputStream in = Files.newInputStream(file)) {
+                Replay replay = Replay.read(in);
+                moves.addAndGet(replay.getMoveCount());
+                problem = verify(replay);
+            } catch (IOException e) {
+                problem = "unreadable: " + e;
+            }
+            if (problem != null) {
+                invalid.incrementAndGet();
+                System.out.println(file + ": " + problem);
+            }
+        });
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%d replays, %d invalid, %d moves in %.3f s (%.0f moves/s, %.0f moves/s per core)%n",
+                files.size(), invalid.get(), moves.get(), seconds,
+                moves.get() / seconds, moves.get() / seconds / cores);
+        if (invalid.get() > 0) {
+            System.exit(1);
+        }
+    }
+}
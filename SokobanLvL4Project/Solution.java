@@ -0,0 +1,122 @@
+/**
+ * The Solution class holds the result of a solver run: the move sequence (if one was found)
+ * and statistics about the search.
+ * Moves are written in the usual Sokoban LURD notation: lowercase letters are plain moves,
+ * uppercase letters are moves that push a box.
+ */
+public class Solution {
+
+    /**
+     * LURD characters for each Board direction code.
+     */
+    static final char[] DIR_CHARS = {'u', 'd', 'l', 'r'};
+
+    // The move sequence, or null if the level was not solved.
+    private final String moves;
+
+    // Number of states expanded by the search.
+    private final long statesExpanded;
+
+    // Time spent searching in nanoseconds.
+    private final long nanos;
+
+    /**
+     * Constructor for the Solution class.
+     *
+     * @param moves          The LURD move sequence, or null if no solution was found.
+     * @param statesExpanded The number of states the search expanded.
+     * @param nanos          The time spent searching in nanoseconds.
+     */
+    public Solution(String moves, long statesExpanded, long nanos) {
+        this.moves = moves;
+        this.statesExpanded = statesExpanded;
+        this.nanos = nanos;
+    }
+
+    /**
+     * Checks whether a solution was found.
+     *
+     * @return True if the level was solved.
+     */
+    public boolean isSolved() {
+        return moves != null;
+    }
+
+    /**
+     * Gets the move sequence in LURD notation.
+     *
+     * @return The moves, or null if the level was not solved.
+     */
+    public String getMoves() {
+        return moves;
+    }
+
+    /**
+     * Gets the number of moves in the solution.
+     *
+     * @return The move count, or -1 if the level was not solved.
+     */
+    public int getMoveCount() {
+        return moves == null ? -1 : moves.length();
+    }
+
+    /**
+     * Gets the number of pushes in the solution.
+     *
+     * @return The push count, or -1 if the level was not solved.
+     */
+    public int getPushCount() {
+        if (moves == null) return -1;
+        int pushes = 0;
+        for (int i = 0; i < moves.length(); i++) {
+            if (Character.isUpperCase(moves.charAt(i))) pushes++;
+        }
+        return pushes;
+    }
+
+    /**
+     * Gets the number of states the search expanded.
+     *
+     * @return The number of expanded states.
+     */
+    public long getStatesExpanded() {
+        return statesExpanded;
+    }
+
+    /**
+     * Gets the time spent searching.
+     *
+     * @return The search time in milliseconds.
+     */
+    public double getMillis() {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * Converts a LURD character back into a Board direction code.
+     *
+     * @param c The LURD character (either case).
+     * @return The direction code, or -1 if the character is not a direction.
+     */
+    static int directionOf(char c) {
+        switch (Character.toLowerCase(c)) {
+            case 'u': return Board.UP;
+            case 'd': return Board.DOWN;
+            case 'l': return Board.LEFT;
+            case 'r': return Board.RIGHT;
+            default: return -1;
+        }
+    }
+
+    /**
+     * Returns a one-line summary of the solution.
+     *
+     * @return The summary.
+     */
+    @Override
+    public String toString() {
+        String stats = String.format("%d states, %.1f ms", statesExpanded, getMillis());
+        if (moves == null) return "unsolved (" + stats + ")";
+        return getMoveCount() + " moves, " + getPushCount() + " pushes (" + stats + ")";
+    }
+}
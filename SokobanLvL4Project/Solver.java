@@ -0,0 +1,429 @@
+/**
+ * The Solver class searches for a move sequence that solves a level, without any user interface.
+ * It runs an A* search ({@link #solve()}) or an IDA* search ({@link #solveIda()}) over board states
+ * and lets a {@link Board} apply the exact game rules, so portals and coins behave just like in the game.
+ * Moves that die in lava or at a blocked portal are never taken: they put the boxes back, which the
+ * push distance estimate cannot account for, so solutions are optimal among those that never start over.
+ * Duplicate states are detected through their Zobrist hash in a bounded {@link TranspositionTable}.
+ */
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+public class Solver {
+
+    /**
+     * Distance used for cells from which a box can never reach a checkpoint.
+     */
+    static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    /**
+     * Returned by an IDA* round that found a solution.
+     */
+    private static final double FOUND = -1;
+
+    // The board used to apply moves; its state is overwritten for every expansion.
+    private final Board board;
+
+    // Dead square and freeze deadlock detection for the board.
+    private final DeadlockDetector deadlocks;
+
+    // Minimum number of pushes needed to bring a box from each cell to any checkpoint.
+    private final int[] pushDistance;
+
+    // Coins that can change the outcome of a move (those next to a portal, where they block the exit).
+    private final long[] relevantCoins;
+
+    // Heuristic weight; 1.0 gives optimal solutions, larger values trade length for speed.
+    private double weight = 1.0;
+
+    // The maximum number of states to expand before giving up.
+    private long maxStates = 10_000_000;
+
+    // Memory budget of the transposition table in bytes.
+    private long tableBudget = 16L << 20;
+
+    // The current path of an IDA* search: the state at each depth and the move leading away from it.
+    private long[][] pathStates;
+    private char[] pathMoves;
+    private int solutionLength;
+
+    // The states an IDA* round has reached, and the states expanded over all rounds.
+    private TranspositionTable pathTable;
+    private long idaExpanded;
+
+    /**
+     * Constructor for the Solver class.
+     *
+     * @param layout The level layout to solve, indexed as layout[y][x].
+     */
+    public Solver(int[][] layout) {
+        this(layout, null);
+    }
+
+    /**
+     * Constructor for the Solver class for a level with explicit portal pairs.
+     *
+     * @param layout      The level layout to solve, indexed as layout[y][x].
+     * @param portalLinks The portal pairs as coordinates [x1, y1, x2, y2, ...], or null for scan order.
+     */
+    public Solver(int[][] layout, int[] portalLinks) {
+        this.board = new Board(layout, portalLinks);
+        this.deadlocks = new DeadlockDetector(board);
+        this.pushDistance = deadlocks.getPushDistances();
+        this.relevantCoins = relevantCoinMask(board);
+    }
+
+    /**
+     * Sets the heuristic weight. A weight of w guarantees a solution at most w times longer
+     * than the optimum.
+     *
+     * @param weight The weight (at least 1.0).
+     * @return This solver.
+     */
+    public Solver setWeight(double weight) {
+        if (weight < 1.0) {
+            throw new IllegalArgumentException("Weight must be at least 1: " + weight);
+        }
+        this.weight = weight;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of states the search may expand.
+     *
+     * @param maxStates The state limit.
+     * @return This solver.
+     */
+    public Solver setMaxStates(long maxStates) {
+        this.maxStates = maxStates;
+        return this;
+    }
+
+    /**
+     * Sets the memory budget of the transposition table used to detect duplicate states.
+     * A smaller table may forget states and expand them again, but never gives wrong results.
+     *
+     * @param bytes The budget in bytes.
+     * @return This solver.
+     */
+    public Solver setTableBudget(long bytes) {
+        this.tableBudget = bytes;
+        return this;
+    }
+
+    /**
+     * Searches for a solution with A*. With weight 1.0 the solution has the minimum number of moves.
+     *
+     * @return The solution, which reports unsolved if the level has no solution or the state limit was hit.
+     */
+    public Solution solve() {
+        long startTime = System.nanoTime();
+
+        // Create the root node from the initial board state.
+        long[] rootState = new long[board.stateSize()];
+        board.saveState(rootState);
+        maskCoins(rootState, relevantCoins);
+        int rootH = heuristic(rootState, pushDistance);
+        if (rootH < 0) {
+            return new Solution(null, 0, System.nanoTime() - startTime);
+        }
+
+        // The board now holds the masked root state, so its hash ignores irrelevant coins from here on.
+        board.loadState(rootState);
+        PriorityQueue<Node> open = new PriorityQueue<>();
+        TranspositionTable table = new TranspositionTable(tableBudget);
+        Node root = new Node(rootState, board.getHash(), 0, rootH, weight, null, -1, false);
+        open.add(root);
+        table.putIfBetter(root.hash, 0);
+
+        long expanded = 0;
+        long[] buffer = new long[board.stateSize()];
+        while (!open.isEmpty()) {
+            Node node = open.poll();
+
+            // Skip nodes that were superseded by a cheaper path to the same state.
+            int bestG = table.get(node.hash);
+            if (bestG != TranspositionTable.MISS && bestG < node.g) continue;
+
+            board.loadState(node.state);
+            if (board.isSolved()) {
+                return new Solution(node.path(), expanded, System.nanoTime() - startTime);
+            }
+            if (++expanded > maxStates) break;
+
+            // Try all four directions using the game's own rules.
+            for (int dir = 0; dir < 4; dir++) {
+                board.loadState(node.state);
+                int result = board.move(dir);
+                if (!isSuccessor(result)) continue;
+                if (result == Board.PUSHED && deadlocks.isFreezeDeadlock(board.getLastBoxTo())) continue;
+
+                board.saveState(buffer);
+                maskCoins(buffer, relevantCoins);
+                int h = heuristic(buffer, pushDistance);
+                if (h < 0) continue; // A box is stuck on a dead square.
+
+                // Queue the state unless it was already reached at least as cheaply.
+                if (table.putIfBetter(board.getHash(), node.g + 1)) {
+                    open.add(new Node(buffer.clone(), board.getHash(), node.g + 1, h, weight, node, dir,
+                            result == Board.PUSHED));
+                }
+            }
+        }
+        return new Solution(null, expanded, System.nanoTime() - startTime);
+    }
+
+    /**
+     * Searches for a solution with IDA*: depth-first searches that stop where the estimated solution
+     * length exceeds a bound, raising the bound to the smallest estimate that exceeded it after each
+     * round. Only the current path and the transposition table are kept in memory, so this suits levels
+     * whose A* frontier would not fit, at the cost of searching the first moves again in every round.
+     * The weight and the state limit apply as for {@link #solve()}; with weight 1.0 the solution has
+     * the minimum number of moves.
+     *
+     * @return The solution, which reports unsolved if the level has no solution or the state limit was hit.
+     */
+    public Solution solveIda() {
+        long startTime = System.nanoTime();
+
+        long[] rootState = new long[board.stateSize()];
+        board.saveState(rootState);
+        maskCoins(rootState, relevantCoins);
+        int rootH = heuristic(rootState, pushDistance);
+        if (rootH < 0) {
+            return new Solution(null, 0, System.nanoTime() - startTime);
+        }
+
+        pathStates = new long[64][];
+        pathMoves = new char[64];
+        pathStates[0] = rootState;
+        pathTable = new TranspositionTable(tableBudget);
+        idaExpanded = 0;
+        double bound = weight * rootH;
+        while (true) {
+            // Every round starts from scratch, since the bound decides which states are worth revisiting.
+            pathTable.clear();
+            board.loadState(rootState);
+            pathTable.putIfBetter(board.getHash(), 0);
+            double next = deepen(0, bound);
+            if (next == FOUND) {
+                return new Solution(new String(pathMoves, 0, solutionLength), idaExpanded, System.nanoTime() - startTime);
+            }
+            if (next == Double.POSITIVE_INFINITY) {
+                // Nothing lies beyond the bound, or the state limit was hit.
+                return new Solution(null, idaExpanded, System.nanoTime() - startTime);
+            }
+            bound = next;
+        }
+    }
+
+    /**
+     * Searches the moves from the state at the given depth of the current path.
+     *
+     * @param g     The depth, which is also the number of moves made.
+     * @param bound The largest estimated solution length to explore.
+     * @return {@link #FOUND} if a solution was found, otherwise the smallest estimate above the bound.
+     */
+    private double deepen(int g, double bound) {
+        long[] state = pathStates[g];
+        board.loadState(state);
+        if (board.isSolved()) {
+            solutionLength = g;
+            return FOUND;
+        }
+        if (++idaExpanded > maxStates) return Double.POSITIVE_INFINITY;
+        if (g + 1 == pathStates.length) {
+            pathStates = Arrays.copyOf(pathStates, pathStates.length * 2);
+            pathMoves = Arrays.copyOf(pathMoves, pathMoves.length * 2);
+        }
+        if (pathStates[g + 1] == null) pathStates[g + 1] = new long[state.length];
+
+        double next = Double.POSITIVE_INFINITY;
+        for (int dir = 0; dir < 4; dir++) {
+            board.loadState(state);
+            int result = board.move(dir);
+            if (!isSuccessor(result)) continue;
+            if (result == Board.PUSHED && deadlocks.isFreezeDeadlock(board.getLastBoxTo())) continue;
+
+            long[] child = pathStates[g + 1];
+            board.saveState(child);
+            maskCoins(child, relevantCoins);
+            int h = heuristic(child, pushDistance);
+            if (h < 0) continue; // A box is stuck on a dead square.
+            double f = g + 1 + weight * h;
+            if (f > bound) {
+                next = Math.min(next, f);
+                continue;
+            }
+
+            // Skip states this round already reached at least as cheaply.
+            if (!pathTable.putIfBetter(board.getHash(), g + 1)) continue;
+            char c = Solution.DIR_CHARS[dir];
+            pathMoves[g] = result == Board.PUSHED ? Character.toUpperCase(c) : c;
+            double t = deepen(g + 1, bound);
+            if (t == FOUND) return FOUND;
+            next = Math.min(next, t);
+        }
+        return next;
+    }
+
+    /**
+     * Checks whether a move leads to a state the solvers search. Blocked moves lead nowhere, and
+     * dying in lava or at a blocked portal starts the level over, so neither is a successor.
+     *
+     * @param result The result of {@link Board#move(int)}.
+     * @return True if the move was a plain move or a push.
+     */
+    static boolean isSuccessor(int result) {
+        return result == Board.MOVED || result == Board.PUSHED;
+    }
+
+    /**
+     * Estimates the number of moves left as the sum of each box's push distance to the nearest checkpoint.
+     * Every push is a move, so this never overestimates.
+     *
+     * @param state        A saved board state.
+     * @param pushDistance The push distance table of the level.
+     * @return The estimate, or -1 if a box can never reach a checkpoint.
+     */
+    static int heuristic(long[] state, int[] pushDistance) {
+        int words = (state.length - 1) / 2;
+        int sum = 0;
+        for (int w = 0; w < words; w++) {
+            long bits = state[1 + w];
+            while (bits != 0) {
+                int cell = (w << 6) + Long.numberOfTrailingZeros(bits);
+                int d = pushDistance[cell];
+                if (d == UNREACHABLE) return -1;
+                sum += d;
+                bits &= bits - 1;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Clears all coins that cannot affect the rules, so states differing only in those coins are merged.
+     *
+     * @param state A saved board state.
+     * @param mask  The mask from {@link #relevantCoinMask(Board)}.
+     */
+    static void maskCoins(long[] state, long[] mask) {
+        int words = mask.length;
+        for (int w = 0; w < words; w++) {
+            state[1 + words + w] &= mask[w];
+        }
+    }
+
+    /**
+     * Builds the mask of coins that can change the outcome of a move. Only coins next to a portal
+     * can block a portal exit; all other coins never affect the rules.
+     *
+     * @param board The board to analyse.
+     * @return A bitset of the relevant coin cells.
+     */
+    static long[] relevantCoinMask(Board board) {
+        long[] mask = new long[(board.stateSize() - 1) / 2];
+        for (int cell = 0; cell < board.getWidth() * board.getHeight(); cell++) {
+            int tile = board.staticTile(cell);
+            if (tile != Board.PORTAL_PURPLE && tile != Board.PORTAL_GREEN) continue;
+            for (int dir = 0; dir < 4; dir++) {
+                int n = board.neighbor(cell, dir);
+                if (n >= 0) Board.set(mask, n);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Computes, for every cell, the minimum number of pushes needed to bring a box from that cell
+     * onto any checkpoint, ignoring the other boxes. Pushes through portals are taken into account.
+     *
+     * @param board The board to analyse.
+     * @return The push distance per cell, or {@link #UNREACHABLE}.
+     */
+    static int[] computePushDistances(Board board) {
+        int[] dist = new int[board.getWidth() * board.getHeight()];
+        new BoardBfs(board).pushDistances(dist);
+        return dist;
+    }
+
+    /**
+     * Determines where a box lands when pushed from a cell, looking only at static tiles.
+     *
+     * @param board The board.
+     * @param cell  The box cell.
+     * @param dir   The push direction.
+     * @return The landing cell, or -1 if the push is impossible.
+     */
+    static int pushTarget(Board board, int cell, int dir) {
+        // The box cell itself must be able to hold a box.
+        if (!canHoldBox(board, cell)) return -1;
+
+        // The player needs room behind the box.
+        int behind = board.neighbor(cell, dir ^ 1);
+        if (behind < 0 || board.staticTile(behind) == Board.WALL || board.staticTile(behind) == Board.LAVA) return -1;
+
+        // The box moves forward, possibly through a portal.
+        int target = board.neighbor(cell, dir);
+        if (target < 0) return -1;
+        int tile = board.staticTile(target);
+        if (tile == Board.PORTAL_PURPLE || tile == Board.PORTAL_GREEN) {
+            target = board.portalExitCell(target, dir);
+            if (target < 0) return -1;
+        }
+        return canHoldBox(board, target) ? target : -1;
+    }
+
+    /**
+     * Checks whether a box can ever rest on a cell.
+     */
+    private static boolean canHoldBox(Board board, int cell) {
+        int tile = board.staticTile(cell);
+        return tile == Board.FLOOR || tile == Board.CHECKPOINT;
+    }
+
+    /**
+     * A search node: a board state plus the path information needed to rebuild the move sequence.
+     */
+    private static final class Node implements Comparable<Node> {
+        final long[] state;
+        final long hash;
+        final int g;
+        final int h;
+        final double f;
+        final Node parent;
+        final int dir;
+        final boolean push;
+
+        Node(long[] state, long hash, int g, int h, double weight, Node parent, int dir, boolean push) {
+            this.state = state;
+            this.hash = hash;
+            this.g = g;
+            this.h = h;
+            this.f = g + weight * h;
+            this.parent = parent;
+            this.dir = dir;
+            this.push = push;
+        }
+
+        /**
+         * Rebuilds the LURD move sequence leading to this node.
+         */
+        String path() {
+            char[] moves = new char[g];
+            for (Node n = this; n.parent != null; n = n.parent) {
+                char c = Solution.DIR_CHARS[n.dir];
+                moves[n.g - 1] = n.push ? Character.toUpperCase(c) : c;
+            }
+            return new String(moves);
+        }
+
+        @Override
+        public int compareTo(Node o) {
+            // Lowest f first; on ties prefer deeper nodes, which are closer to a solution.
+            int c = Double.compare(f, o.f);
+            return c != 0 ? c : Integer.compare(o.g, g);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * The SpriteCache class holds ready-to-draw tile sprites.
+ * Every tile value is drawn from one or more image layers (for example floor and player). The
+ * layers are scaled and composited once per tile size into a display-compatible image, so drawing
+ * a tile is a single unscaled blit.
+ */
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+public class SpriteCache {
+
+    /**
+     * The number of tile values that can have sprites.
+     */
+    private static final int TILE_VALUES = 16;
+
+    // The configuration of the screen the sprites are drawn to, or null when running headless.
+    private final GraphicsConfiguration config;
+
+    // The image layers of each tile value from bottom to top, or null if the value is undefined.
+    private final Image[][] layers = new Image[TILE_VALUES][];
+
+    // The composited sprites per tile size, indexed by tile value.
+    private final Map<Integer, BufferedImage[]> sprites = new HashMap<>();
+
+    /**
+     * Constructor for the SpriteCache class.
+     *
+     * @param config The graphics configuration of the target screen, or null to use plain RGB images.
+     */
+    public SpriteCache(GraphicsConfiguration config) {
+        this.config = config;
+    }
+
+    /**
+     * Defines the image layers of a tile value. A missing (null) layer is drawn as a black square,
+     * like a tile image that failed to load.
+     *
+     * @param tile   The tile value.
+     * @param layers The layers from bottom to top.
+     */
+    public void define(int tile, Image... layers) {
+        this.layers[tile] = layers.clone();
+
+        // Drop sprites built from the old layers; they are rebuilt on demand.
+        sprites.clear();
+    }
+
+    /**
+     * Gets the sprite of a tile value at a tile size, building the sprites for that size on first use.
+     *
+     * @param tile  The tile value.
+     * @param scale The tile size in pixels.
+     * @return The sprite, or null if the tile value has no sprite.
+     */
+    public BufferedImage get(int tile, int scale) {
+        if (tile < 0 || tile >= TILE_VALUES || layers[tile] == null) return null;
+        return sprites.computeIfAbsent(scale, this::build)[tile];
+    }
+
+    /**
+     * Scales and composites the sprites of all defined tile values for one tile size.
+     *
+     * @param scale The tile size in pixels.
+     * @return The sprites, indexed by tile value.
+     */
+    private BufferedImage[] build(int scale) {
+        BufferedImage[] result = new BufferedImage[TILE_VALUES];
+        for (int tile = 0; tile < TILE_VALUES; tile++) {
+            if (layers[tile] == null) continue;
+
+            // Tiles are drawn onto a black background, so the composite can be opaque.
+            BufferedImage sprite = config != null
+                    ? config.createCompatibleImage(scale, scale, Transparency.OPAQUE)
+                    : new BufferedImage(scale, scale, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = sprite.createGraphics();
+            g.setColor(Color.BLACK);
+            g.fillRect(0, 0, scale, scale);
+            for (Image layer : layers[tile]) {
+                if (layer != null) {
+                    g.drawImage(layer, 0, 0, scale, scale, null);
+                } else {
+                    g.setColor(Color.BLACK);
+                    g.fillRect(0, 0, scale, scale);
+                }
+            }
+            g.dispose();
+            result[tile] = sprite;
+        }
+        return result;
+    }
+}
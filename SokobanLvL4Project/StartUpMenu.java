@@ -18,6 +18,11 @@ public class StartUpMenu extends JFrame {
      */
     public static int totalCoins = 0;
 
+    /**
+     * The levels offered by the menu: the built-in levels unless a level pack was opened.
+     */
+    public static LevelSource levelSource = Game.builtInLevels();
+
     /**
      * Array of menu options displayed to the user.
      */
@@ -39,6 +44,9 @@ public class StartUpMenu extends JFrame {
      * Initializes the menu and sets up the GUI components.
      */
     public StartUpMenu() {
+        // Start loading the game images in the background while the menu is shown.
+        AssetManager.preload(AssetManager.GAME_SPRITES);
+
         // Set the default close operation to exit the application when the window is closed.
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
@@ -93,21 +101,22 @@ public class StartUpMenu extends JFrame {
     private void handleSelection() {
         switch (currentSelection) {
             case 0: // Start the game from Level 1.
-                new GameIO(new Game(0), 64, 1.0);
-                LevelInfo.displayLevelTitle(1);
+                new GameIO(new Game(levelSource, 0), 64, 1.0);
+                LevelInfo.displayLevelTitle(levelSource, 1);
                 dispose(); // Close the menu window.
                 break;
 
             case 1: // Prompt the user to select a level.
-                String levelStr = CustomDialog.input("Enter level number (1..7):", "Level Selection");
+                // Checked with hasLevel, so a large pack is only indexed up to the chosen level.
+                String levelStr = CustomDialog.input("Enter level number:", "Level Selection");
                 if (levelStr != null) {
                     try {
                         int lvl = Integer.parseInt(levelStr);
-                        if (lvl < 1 || lvl > 7) {
+                        if (!levelSource.hasLevel(lvl - 1)) {
                             throw new InvalidLevelException("Invalid level number: " + lvl);
                         } else {
-                            new GameIO(new Game(lvl - 1), 64, 1.0);
-                            LevelInfo.displayLevelTitle(lvl);
+                            new GameIO(new Game(levelSource, lvl - 1), 64, 1.0);
+                            LevelInfo.displayLevelTitle(levelSource, lvl);
                             dispose();
                         }
                     } catch (InvalidLevelException e) {
@@ -148,7 +157,8 @@ public class StartUpMenu extends JFrame {
         4. Collect coins to increase your score.<br>
         5. Use portals to teleport.<br>
         6. Press R to reset the current level.<br>
-        7. Press ESC to access the pause menu.
+        7. Press Z to undo a move and Y to redo it.<br>
+        8. Press ESC to access the pause menu.
         </div>
         </html>
          """;
@@ -275,26 +285,23 @@ public class StartUpMenu extends JFrame {
 class LevelInfo {
 
     /**
-     * Array of titles for each level in the game.
+     * Displays the title of the specified built-in level.
+     *
+     * @param level The level number to display.
      */
-    private static final String[] LEVEL_TITLES = {
-            "Level 1: Beginning",
-            "Level 2: Challenge",
-            "Level 3: Challenge 2",
-            "Level 4: Easy Maze",
-            "Level 5: Lava Zone",
-            "Level 6: Portal Room",
-            "Level 7: The Right Path"
-    };
+    public static void displayLevelTitle(int level) {
+        displayLevelTitle(Game.builtInLevels(), level);
+    }
 
     /**
-     * Displays the title of the specified level.
+     * Displays the title of the specified level of a level source.
      *
-     * @param level The level number to display.
+     * @param source The levels being played.
+     * @param level  The level number to display.
      */
-    public static void displayLevelTitle(int level) {
-        if (level < 1 || level > LEVEL_TITLES.length) return;
-        String title = LEVEL_TITLES[level - 1];
+    public static void displayLevelTitle(LevelSource source, int level) {
+        if (!source.hasLevel(level - 1)) return;
+        String title = "Level " + level + ": " + source.getTitle(level - 1);
         CustomDialog.alert(title, "Level Start");
     }
 }
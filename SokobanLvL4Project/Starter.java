@@ -2,14 +2,30 @@
  * The Starter class serves as the entry point for the Sokoban game application.
  * It initializes the Startup Menu where users can navigate through various game options.
  */
+import java.io.IOException;
+import java.nio.file.Paths;
+
 public class Starter {
 
         /**
          * The main method starts the Sokoban application by creating an instance of the StartUpMenu class.
          *
-         * @param args Command-line arguments (not used in this application).
+         * @param args Command-line arguments: an optional path to an XSB or binary level pack to play instead of the built-in levels.
          */
         public static void main(String[] args) {
+                // Open the level pack, if one was given.
+                if (args.length > 0) {
+                        try {
+                                StartUpMenu.levelSource = LevelSource.open(Paths.get(args[0]));
+                        } catch (IOException e) {
+                                // Print the stack trace and fall back to the built-in levels.
+                                e.printStackTrace();
+                        }
+                }
+
+                // Publish the runtime metrics, if enabled with -Dsokoban.metrics=true.
+                GameMetrics.start();
+
                 // Start the game by initializing the StartUpMenu
                 new StartUpMenu();
         }
@@ -0,0 +1,314 @@
+/**
+ * The TextureAtlas class packs many small sprites into one image and remembers where each
+ * sprite lies in it. Loading one atlas replaces opening and decoding every sprite file, and all
+ * sprites are drawn from a single source surface.
+ *
+ * An atlas is stored as an image file and an index file with one line per sprite:
+ * "name x y width height".
+ *
+ * The atlas files are generated from the sprite files by {@link #main(String[])} and must be
+ * regenerated whenever a sprite changes; "--check" reports an atlas that no longer matches.
+ */
+import javax.imageio.ImageIO;
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class TextureAtlas {
+
+    /**
+     * File name of the atlas image shipped with the game.
+     */
+    public static final String IMAGE_FILE = "sprites.atlas.png";
+
+    /**
+     * File name of the atlas index shipped with the game.
+     */
+    public static final String INDEX_FILE = "sprites.atlas.txt";
+
+    /**
+     * Transparent gap between sprites, so scaled drawing never samples a neighbouring sprite.
+     */
+    private static final int PADDING = 1;
+
+    // The packed image.
+    private final BufferedImage image;
+
+    // The region of every sprite in the packed image, by sprite name.
+    private final Map<String, Rectangle> regions;
+
+    /**
+     * Constructor for the TextureAtlas class.
+     *
+     * @param image   The packed image.
+     * @param regions The region of every sprite, by name.
+     */
+    public TextureAtlas(BufferedImage image, Map<String, Rectangle> regions) {
+        this.image = image;
+        this.regions = regions;
+    }
+
+    /**
+     * Packs sprites into a new atlas. Sprites are placed on shelves, tallest first, in an image
+     * roughly as wide as it is high.
+     *
+     * @param sprites The sprites to pack, by name.
+     * @return The atlas.
+     */
+    public static TextureAtlas pack(Map<String, BufferedImage> sprites) {
+        // Sort by height so each shelf wastes little space.
+        List<Map.Entry<String, BufferedImage>> order = new ArrayList<>(sprites.entrySet());
+        order.sort(Comparator.comparingInt((Map.Entry<String, BufferedImage> e) -> e.getValue().getHeight())
+                .reversed().thenComparing(Map.Entry::getKey));
+
+        // Aim for a square: the shelf width is the square root of the total area.
+        long area = 0;
+        int widest = 0;
+        for (BufferedImage sprite : sprites.values()) {
+            area += (long) (sprite.getWidth() + PADDING) * (sprite.getHeight() + PADDING);
+            widest = Math.max(widest, sprite.getWidth() + PADDING);
+        }
+        int shelfWidth = Math.max(widest, (int) Math.ceil(Math.sqrt(area)));
+
+        // Place the sprites shelf by shelf.
+        Map<String, Rectangle> regions = new LinkedHashMap<>();
+        int x = 0;
+        int y = 0;
+        int shelfHeight = 0;
+        int width = 0;
+        for (Map.Entry<String, BufferedImage> entry : order) {
+            BufferedImage sprite = entry.getValue();
+            if (x + sprite.getWidth() > shelfWidth) {
+                x = 0;
+                y += shelfHeight + PADDING;
+                shelfHeight = 0;
+            }
+            regions.put(entry.getKey(), new Rectangle(x, y, sprite.getWidth(), sprite.getHeight()));
+            x += sprite.getWidth() + PADDING;
+            shelfHeight = Math.max(shelfHeight, sprite.getHeight());
+            width = Math.max(width, x - PADDING);
+        }
+        int height = y + shelfHeight;
+
+        // Copy the sprites into the atlas image.
+        BufferedImage atlas = new BufferedImage(Math.max(1, width), Math.max(1, height), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = atlas.createGraphics();
+        // Copy the pixels as they are; blending would round semi-transparent pixels.
+        g.setComposite(AlphaComposite.Src);
+        for (Map.Entry<String, Rectangle> entry : regions.entrySet()) {
+            g.drawImage(sprites.get(entry.getKey()), entry.getValue().x, entry.getValue().y, null);
+        }
+        g.dispose();
+        return new TextureAtlas(atlas, regions);
+    }
+
+    /**
+     * Reads an atlas from its image and index.
+     *
+     * @param imageIn The atlas image.
+     * @param indexIn The atlas index.
+     * @return The atlas.
+     * @throws IOException if either stream is invalid.
+     */
+    public static TextureAtlas read(InputStream imageIn, InputStream indexIn) throws IOException {
+        BufferedImage image = ImageIO.read(imageIn);
+        if (image == null) {
+            throw new IOException("Unsupported atlas image format");
+        }
+        Map<String, Rectangle> regions = new LinkedHashMap<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(indexIn, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] parts = line.split("\\s+");
+            if (parts.length != 5) {
+                throw new IOException("Invalid atlas index line: " + line);
+            }
+            Rectangle region = new Rectangle(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+                    Integer.parseInt(parts[3]), Integer.parseInt(parts[4]));
+            if (!new Rectangle(image.getWidth(), image.getHeight()).contains(region)) {
+                throw new IOException("Atlas region outside the image: " + line);
+            }
+            regions.put(parts[0], region);
+        }
+        return new TextureAtlas(image, regions);
+    }
+
+    /**
+     * Writes the atlas image and index.
+     *
+     * @param imageFile The file for the atlas image.
+     * @param indexFile The file for the atlas index.
+     * @throws IOException if writing fails.
+     */
+    public void write(Path imageFile, Path indexFile) throws IOException {
+        ImageIO.write(image, "png", imageFile.toFile());
+        try (BufferedWriter out = Files.newBufferedWriter(indexFile, StandardCharsets.UTF_8)) {
+            out.write("# name x y width height");
+            out.newLine();
+            for (Map.Entry<String, Rectangle> entry : regions.entrySet()) {
+                Rectangle r = entry.getValue();
+                out.write(entry.getKey() + " " + r.x + " " + r.y + " " + r.width + " " + r.height);
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     * Checks whether the atlas contains a sprite.
+     *
+     * @param name The sprite name.
+     * @return True if the sprite is in the atlas.
+     */
+    public boolean contains(String name) {
+        return regions.containsKey(name);
+    }
+
+    /**
+     * Gets the region of a sprite in the atlas image.
+     *
+     * @param name The sprite name.
+     * @return The region, or null if the sprite is not in the atlas.
+     */
+    public Rectangle getRegion(String name) {
+        return regions.get(name);
+    }
+
+    /**
+     * Gets a sprite as a view into the atlas image; no pixels are copied.
+     *
+     * @param name The sprite name.
+     * @return The sprite, or null if it is not in the atlas.
+     */
+    public BufferedImage getSprite(String name) {
+        Rectangle r = regions.get(name);
+        return r == null ? null : image.getSubimage(r.x, r.y, r.width, r.height);
+    }
+
+    /**
+     * Draws a sprite scaled to a target rectangle, straight from the atlas image.
+     *
+     * @param g      The graphics context.
+     * @param name   The sprite name.
+     * @param x      The left edge of the target.
+     * @param y      The top edge of the target.
+     * @param width  The width of the target.
+     * @param height The height of the target.
+     */
+    public void draw(Graphics2D g, String name, int x, int y, int width, int height) {
+        Rectangle r = regions.get(name);
+        if (r == null) return;
+        g.drawImage(image, x, y, x + width, y + height, r.x, r.y, r.x + r.width, r.y + r.height, null);
+    }
+
+    /**
+     * Gets the packed image.
+     *
+     * @return The atlas image.
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Checks whether the atlas holds exactly the given sprites, pixel for pixel.
+     *
+     * @param sprites The sprites the atlas should hold, by name.
+     * @return True if every sprite is in the atlas unchanged and the atlas holds no others.
+     */
+    public boolean matches(Map<String, BufferedImage> sprites) {
+        if (!regions.keySet().equals(sprites.keySet())) return false;
+        for (Map.Entry<String, BufferedImage> entry : sprites.entrySet()) {
+            BufferedImage sprite = entry.getValue();
+            Rectangle r = regions.get(entry.getKey());
+            if (r.width != sprite.getWidth() || r.height != sprite.getHeight()) return false;
+            for (int y = 0; y < r.height; y++) {
+                for (int x = 0; x < r.width; x++) {
+                    if (image.getRGB(r.x + x, r.y + y) != sprite.getRGB(x, y)) return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads every PNG sprite in a directory, leaving out the atlas image itself.
+     *
+     * @param dir The directory.
+     * @return The sprites, by file name.
+     * @throws IOException if a sprite cannot be read.
+     */
+    public static Map<String, BufferedImage> readSprites(Path dir) throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(dir)) {
+            files = listing.filter(p -> p.getFileName().toString().endsWith(".png"))
+                    .filter(p -> !p.getFileName().toString().equals(IMAGE_FILE))
+                    .collect(Collectors.toList());
+        }
+        Map<String, BufferedImage> sprites = new TreeMap<>();
+        for (Path file : files) {
+            BufferedImage sprite = ImageIO.read(file.toFile());
+            if (sprite == null) {
+                throw new IOException("Unsupported image format: " + file);
+            }
+            sprites.put(file.getFileName().toString(), sprite);
+        }
+        return sprites;
+    }
+
+    /**
+     * Packs every PNG sprite in a directory into the game's atlas files in that directory.
+     * The atlas files are generated, so this must be run again whenever a sprite is added or edited:
+     * <pre>java TextureAtlas [directory]</pre>
+     * With "--check" nothing is written; instead the program exits with status 1 if the atlas
+     * files do not match the sprites:
+     * <pre>java TextureAtlas --check [directory]</pre>
+     *
+     * @param args "--check" to only check the atlas, then an optional directory (default: the working directory).
+     * @throws IOException if a sprite cannot be read or the atlas cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        boolean check = args.length > 0 && args[0].equals("--check");
+        int dirArg = check ? 1 : 0;
+        Path dir = Paths.get(args.length > dirArg ? args[dirArg] : ".");
+        Map<String, BufferedImage> sprites = readSprites(dir);
+
+        if (check) {
+            boolean current;
+            try (InputStream image = Files.newInputStream(dir.resolve(IMAGE_FILE));
+                 InputStream index = Files.newInputStream(dir.resolve(INDEX_FILE))) {
+                current = read(image, index).matches(sprites);
+            }
+            if (!current) {
+                System.out.println("The atlas is out of date; run java TextureAtlas " + dir + " to regenerate it");
+                System.exit(1);
+            }
+            System.out.println("The atlas matches all " + sprites.size() + " sprites");
+            return;
+        }
+
+        TextureAtlas atlas = pack(sprites);
+        atlas.write(dir.resolve(IMAGE_FILE), dir.resolve(INDEX_FILE));
+        System.out.println("Packed " + sprites.size() + " sprites into a " + atlas.image.getWidth() + "x"
+                + atlas.image.getHeight() + " atlas");
+    }
+}
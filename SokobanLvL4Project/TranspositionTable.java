@@ -0,0 +1,152 @@
+/**
+ * The TranspositionTable class remembers the best move count seen for each board state,
+ * keyed by the state's Zobrist hash, within a fixed memory budget.
+ * Entries live in buckets of four slots that share a cache line. When a bucket is full, the
+ * entry with the largest move count is replaced, because states close to the start prune the
+ * largest parts of the search.
+ */
+import java.util.Arrays;
+
+public class TranspositionTable {
+
+    /**
+     * Value returned by {@link #get(long)} for states that are not in the table.
+     */
+    public static final int MISS = -1;
+
+    /**
+     * Number of slots per bucket.
+     */
+    private static final int BUCKET_SIZE = 4;
+
+    /**
+     * Bytes used per slot (one long hash and one int value, rounded up).
+     */
+    private static final int BYTES_PER_SLOT = 12;
+
+    // Stored hashes; 0 marks an empty slot.
+    private final long[] hashes;
+
+    // Stored values (the best move count for the state).
+    private final int[] values;
+
+    // Mask selecting a bucket from a hash.
+    private final int bucketMask;
+
+    // Number of occupied slots and number of entries thrown out to make room.
+    private long size;
+    private long replacements;
+
+    /**
+     * Constructor for the TranspositionTable class.
+     *
+     * @param budgetBytes The maximum amount of memory the table may use.
+     */
+    public TranspositionTable(long budgetBytes) {
+        // Use the largest power-of-two bucket count that fits into the budget.
+        long buckets = Math.max(1, budgetBytes / (BYTES_PER_SLOT * BUCKET_SIZE));
+        int bucketCount = (int) Math.min(Long.highestOneBit(buckets), 1 << 26);
+        this.hashes = new long[bucketCount * BUCKET_SIZE];
+        this.values = new int[bucketCount * BUCKET_SIZE];
+        this.bucketMask = bucketCount - 1;
+    }
+
+    /**
+     * Looks up the value stored for a state.
+     *
+     * @param hash The Zobrist hash of the state.
+     * @return The stored value, or {@link #MISS}.
+     */
+    public int get(long hash) {
+        hash = nonZero(hash);
+        int base = bucket(hash);
+        for (int i = base; i < base + BUCKET_SIZE; i++) {
+            if (hashes[i] == hash) return values[i];
+        }
+        return MISS;
+    }
+
+    /**
+     * Stores a move count for a state unless an equal or smaller one is already known.
+     *
+     * @param hash  The Zobrist hash of the state.
+     * @param value The move count needed to reach the state.
+     * @return True if the state was new or the value improved; false if it is a duplicate.
+     */
+    public boolean putIfBetter(long hash, int value) {
+        hash = nonZero(hash);
+        int base = bucket(hash);
+        int victim = base;
+        for (int i = base; i < base + BUCKET_SIZE; i++) {
+            if (hashes[i] == hash) {
+                if (values[i] <= value) return false; // Already reached at least as cheaply.
+                values[i] = value;
+                return true;
+            }
+            if (hashes[i] == 0) {
+                // Free slot: take it.
+                hashes[i] = hash;
+                values[i] = value;
+                size++;
+                return true;
+            }
+            if (values[i] > values[victim]) victim = i;
+        }
+
+        // The bucket is full: replace the entry farthest from the start.
+        hashes[victim] = hash;
+        values[victim] = value;
+        replacements++;
+        return true;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        Arrays.fill(hashes, 0L);
+        size = 0;
+        replacements = 0;
+    }
+
+    /**
+     * Gets the number of occupied slots.
+     *
+     * @return The number of entries.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of slots in the table.
+     *
+     * @return The capacity.
+     */
+    public int capacity() {
+        return hashes.length;
+    }
+
+    /**
+     * Gets the number of entries that were replaced because their bucket was full.
+     *
+     * @return The number of replacements.
+     */
+    public long getReplacements() {
+        return replacements;
+    }
+
+    /**
+     * Selects the first slot of the bucket for a hash.
+     */
+    private int bucket(long hash) {
+        return ((int) (hash >>> 32) & bucketMask) * BUCKET_SIZE;
+    }
+
+    /**
+     * Maps the hash 0, which marks empty slots, to another value.
+     */
+    private static long nonZero(long hash) {
+        return hash == 0 ? 1 : hash;
+    }
+}
@@ -0,0 +1,396 @@
+/**
+ * The XsbLevelPack class reads levels from a text level pack in the common XSB format,
+ * extended with symbols for this game's special tiles.
+ *
+ * Symbols: '#' wall, ' ', '-' or '_' floor, '@' player, '+' player on checkpoint, '$' box,
+ * '*' box on checkpoint, '.' checkpoint, and the extensions '~' lava, 'c' coin,
+ * 'p' purple portal and 'g' green portal.
+ * A level is a block of consecutive board lines. A comment line starting with ';' directly
+ * before a level (blank lines allowed in between) is used as its title. Comment lines of the
+ * form "; link x1,y1 x2,y2" before a level pair two portals explicitly; a level with links
+ * only has the declared pairs, otherwise portals pair up in scan order.
+ *
+ * The file is memory-mapped and only indexed as far as needed: opening a pack reads nothing,
+ * and loading level N scans for block boundaries up to level N and parses only that level.
+ * Titles are read from the comments alone, without parsing the board.
+ */
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class XsbLevelPack implements LevelSource {
+
+    // The memory-mapped file contents.
+    private final MappedByteBuffer data;
+
+    // Name of the pack, used for default titles.
+    private final String name;
+
+    /**
+     * Matches a portal link comment: "link x1,y1 x2,y2".
+     */
+    private static final Pattern LINK = Pattern.compile("link\\s+(\\d+)\\s*,\\s*(\\d+)\\s+(\\d+)\\s*,\\s*(\\d+)\\s*");
+
+    // Per level: where the lines before the board start, and start and end offset of the board lines.
+    private int[] headerStart = new int[16];
+    private int[] boardStart = new int[16];
+    private int[] boardEnd = new int[16];
+
+    // Number of levels indexed so far.
+    private int indexed;
+
+    // Offset where indexing continues and whether the whole file has been indexed.
+    private int scanPosition;
+    private boolean fullyIndexed;
+
+    /**
+     * Opens a level pack. The file is mapped into memory but not read.
+     *
+     * @param file The pack file.
+     * @throws IOException if the file cannot be opened or is larger than 2 GB.
+     */
+    public XsbLevelPack(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Level pack too large: " + file);
+            }
+            // The mapping stays valid after the channel is closed.
+            this.data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        this.name = file.getFileName().toString();
+    }
+
+    /**
+     * Gets the number of levels. This indexes the whole file.
+     *
+     * @return The number of levels.
+     */
+    @Override
+    public synchronized int size() {
+        while (scanNextLevel()) {
+            // Keep indexing until the end of the file.
+        }
+        return indexed;
+    }
+
+    /**
+     * Checks whether a level exists, indexing only up to that level.
+     *
+     * @param index The index of the level.
+     * @return True if the level exists.
+     */
+    @Override
+    public synchronized boolean hasLevel(int index) {
+        if (index < 0) return false;
+        while (indexed <= index && scanNextLevel()) {
+            // Keep indexing until the level is found or the file ends.
+        }
+        return index < indexed;
+    }
+
+    /**
+     * Parses a level.
+     *
+     * @param index The index of the level.
+     * @return The level.
+     * @throws IllegalArgumentException if the level does not exist or contains unknown symbols.
+     */
+    @Override
+    public Level getLevel(int index) {
+        int[] range = locate(index);
+        int header = range[0];
+        int start = range[1];
+        int end = range[2];
+        return new Level(readTitle(index, header, start), parseBoard(start, end), readLinks(header, start));
+    }
+
+    /**
+     * Gets the title of a level from the comments before it, without parsing its board.
+     *
+     * @param index The index of the level.
+     * @return The level title.
+     * @throws IllegalArgumentException if the level does not exist.
+     */
+    @Override
+    public String getTitle(int index) {
+        int[] range = locate(index);
+        return readTitle(index, range[0], range[1]);
+    }
+
+    /**
+     * Looks a level up in the index, indexing up to it if needed.
+     *
+     * @return The header start, board start and board end offsets of the level.
+     */
+    private synchronized int[] locate(int index) {
+        if (!hasLevel(index)) {
+            throw new IllegalArgumentException("Invalid level: " + index);
+        }
+        return new int[]{headerStart[index], boardStart[index], boardEnd[index]};
+    }
+
+    /**
+     * Reads the title from the comments before a board; the last non-link comment wins.
+     */
+    private String readTitle(int index, int header, int start) {
+        String title = name + " #" + (index + 1);
+        int pos = header;
+        while (pos < start) {
+            int lineEnd = lineEnd(pos, start);
+            if (lineEnd > pos && data.get(pos) == ';') {
+                String comment = text(pos + 1, lineEnd);
+                if (!comment.isEmpty() && !LINK.matcher(comment).matches()) {
+                    title = comment;
+                }
+            }
+            pos = skipNewline(lineEnd, start);
+        }
+        return title;
+    }
+
+    /**
+     * Reads the portal links from the comments before a board.
+     *
+     * @return x1, y1, x2, y2 of each link, or null if there are none.
+     */
+    private int[] readLinks(int header, int start) {
+        int[] links = null;
+        int pos = header;
+        while (pos < start) {
+            int lineEnd = lineEnd(pos, start);
+            if (lineEnd > pos && data.get(pos) == ';') {
+                Matcher link = LINK.matcher(text(pos + 1, lineEnd));
+                if (link.matches()) {
+                    int n = links == null ? 0 : links.length;
+                    links = links == null ? new int[4] : Arrays.copyOf(links, n + 4);
+                    for (int i = 0; i < 4; i++) {
+                        links[n + i] = Integer.parseInt(link.group(i + 1));
+                    }
+                }
+            }
+            pos = skipNewline(lineEnd, start);
+        }
+        return links;
+    }
+
+    /**
+     * Writes all levels of a level source as an XSB level pack. Every level is preceded by its
+     * title and its portal links as comment lines and followed by a blank line.
+     *
+     * @param source The levels to write.
+     * @param out    The stream to write to.
+     * @throws IOException if writing fails.
+     */
+    public static void write(LevelSource source, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        for (int i = 0; source.hasLevel(i); i++) {
+            Level level = source.getLevel(i);
+            writer.write("; " + level.getTitle() + "\n");
+            int[] links = level.getPortalLinks();
+            if (links != null) {
+                for (int l = 0; l + 3 < links.length; l += 4) {
+                    writer.write("; link " + links[l] + "," + links[l + 1] + " " + links[l + 2] + "," + links[l + 3] + "\n");
+                }
+            }
+
+            // Floor is written as '-' so no board line is mistaken for a blank line.
+            int width = 0;
+            for (int[] row : level.getTiles()) width = Math.max(width, row.length);
+            char[] line = new char[width];
+            for (int[] row : level.getTiles()) {
+                Arrays.fill(line, symbolOf(Board.FLOOR));
+                for (int x = 0; x < row.length; x++) line[x] = symbolOf(row[x]);
+                writer.write(line);
+                writer.write('\n');
+            }
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * Scans forward for the next level and adds it to the index.
+     *
+     * @return True if a level was found; false at the end of the file.
+     */
+    private boolean scanNextLevel() {
+        if (fullyIndexed) return false;
+        int limit = data.limit();
+        int header = scanPosition;
+        int levelStart = -1;
+        int levelEnd = -1;
+        int pos = scanPosition;
+        while (pos < limit) {
+            // Find the end of the current line.
+            int lineEnd = pos;
+            while (lineEnd < limit && data.get(lineEnd) != '\n') lineEnd++;
+            int next = lineEnd + 1;
+            int contentEnd = lineEnd;
+            if (contentEnd > pos && data.get(contentEnd - 1) == '\r') contentEnd--;
+
+            if (isBoardLine(pos, contentEnd)) {
+                if (levelStart < 0) levelStart = pos;
+                levelEnd = contentEnd;
+            } else if (levelStart >= 0) {
+                // The first non-board line ends the level.
+                scanPosition = pos;
+                addLevel(header, levelStart, levelEnd);
+                return true;
+            }
+            pos = next;
+        }
+        scanPosition = limit;
+        fullyIndexed = true;
+        if (levelStart >= 0) {
+            addLevel(header, levelStart, levelEnd);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds a level to the index.
+     */
+    private void addLevel(int header, int start, int end) {
+        if (indexed == boardStart.length) {
+            int capacity = indexed * 2;
+            headerStart = Arrays.copyOf(headerStart, capacity);
+            boardStart = Arrays.copyOf(boardStart, capacity);
+            boardEnd = Arrays.copyOf(boardEnd, capacity);
+        }
+        headerStart[indexed] = header;
+        boardStart[indexed] = start;
+        boardEnd[indexed] = end;
+        indexed++;
+    }
+
+    /**
+     * Checks whether a line consists only of board symbols and contains at least one non-space symbol.
+     */
+    private boolean isBoardLine(int start, int end) {
+        boolean hasTile = false;
+        for (int i = start; i < end; i++) {
+            int tile = tileOf(data.get(i));
+            if (tile < 0) return false;
+            if (data.get(i) != ' ') hasTile = true;
+        }
+        return hasTile;
+    }
+
+    /**
+     * Parses the board lines between two offsets into a layout. Short lines are padded with floor.
+     */
+    private int[][] parseBoard(int start, int end) {
+        // Measure the board.
+        int width = 0;
+        int height = 0;
+        int pos = start;
+        while (pos < end) {
+            int lineEnd = lineEnd(pos, end);
+            width = Math.max(width, lineEnd - pos);
+            height++;
+            pos = skipNewline(lineEnd, end);
+        }
+
+        // Convert the symbols.
+        int[][] tiles = new int[height][width];
+        pos = start;
+        for (int y = 0; y < height; y++) {
+            int lineEnd = lineEnd(pos, end);
+            for (int x = 0; x < lineEnd - pos; x++) {
+                int tile = tileOf(data.get(pos + x));
+                if (tile < 0) {
+                    throw new IllegalArgumentException("Unknown symbol '" + (char) data.get(pos + x) + "'");
+                }
+                tiles[y][x] = tile;
+            }
+            pos = skipNewline(lineEnd, end);
+        }
+        return tiles;
+    }
+
+    /**
+     * Finds the end of a line's content (excluding "\r\n").
+     */
+    private int lineEnd(int pos, int end) {
+        int i = pos;
+        while (i < end && data.get(i) != '\n' && data.get(i) != '\r') i++;
+        return i;
+    }
+
+    /**
+     * Skips over a line break.
+     */
+    private int skipNewline(int pos, int end) {
+        if (pos < end && data.get(pos) == '\r') pos++;
+        if (pos < end && data.get(pos) == '\n') pos++;
+        return pos;
+    }
+
+    /**
+     * Decodes a text range as a trimmed UTF-8 string.
+     */
+    private String text(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = data.get(start + i);
+        return new String(bytes, StandardCharsets.UTF_8).trim();
+    }
+
+    /**
+     * Converts an XSB symbol into a tile value.
+     *
+     * @param symbol The symbol.
+     * @return The tile value, or -1 if the symbol is not a board symbol.
+     */
+    static int tileOf(byte symbol) {
+        switch (symbol) {
+            case ' ':
+            case '-':
+            case '_':
+                return Board.FLOOR;
+            case '#': return Board.WALL;
+            case '@': return Board.PLAYER;
+            case '+': return Board.PLAYER_ON_CHECKPOINT;
+            case '$': return Board.BOX;
+            case '*': return Board.BOX_ON_CHECKPOINT;
+            case '.': return Board.CHECKPOINT;
+            case 'c': return Board.COIN;
+            case '~': return Board.LAVA;
+            case 'p': return Board.PORTAL_PURPLE;
+            case 'g': return Board.PORTAL_GREEN;
+            default: return -1;
+        }
+    }
+
+    /**
+     * Converts a tile value into its XSB symbol.
+     *
+     * @param tile The tile value.
+     * @return The symbol.
+     */
+    static char symbolOf(int tile) {
+        switch (tile) {
+            case Board.WALL: return '#';
+            case Board.PLAYER: return '@';
+            case Board.PLAYER_ON_CHECKPOINT: return '+';
+            case Board.BOX: return '$';
+            case Board.BOX_ON_CHECKPOINT: return '*';
+            case Board.CHECKPOINT: return '.';
+            case Board.COIN: return 'c';
+            case Board.LAVA: return '~';
+            case Board.PORTAL_PURPLE: return 'p';
+            case Board.PORTAL_GREEN: return 'g';
+            default: return '-';
+        }
+    }
+}
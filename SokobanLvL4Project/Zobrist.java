@@ -0,0 +1,57 @@
+/**
+ * The Zobrist class provides the random keys used to hash board states.
+ * A state hash is the XOR of one key for the player cell, one per box cell and one per remaining coin,
+ * so a move only needs to XOR out the old keys and XOR in the new ones.
+ * The keys are derived from the cell index with a SplitMix64 finalizer instead of being stored in tables,
+ * so even the largest boards need no key memory.
+ */
+public class Zobrist {
+
+    /**
+     * Fixed seed so hashes are stable between runs.
+     */
+    private static final long SEED = 0x5DEECE66DL;
+
+    /**
+     * Gets the key for the player standing on a cell.
+     *
+     * @param cell The packed cell index.
+     * @return The key.
+     */
+    public static long player(int cell) {
+        return mix(cell * 3L);
+    }
+
+    /**
+     * Gets the key for a box on a cell.
+     *
+     * @param cell The packed cell index.
+     * @return The key.
+     */
+    public static long box(int cell) {
+        return mix(cell * 3L + 1);
+    }
+
+    /**
+     * Gets the key for an uncollected coin on a cell.
+     *
+     * @param cell The packed cell index.
+     * @return The key.
+     */
+    public static long coin(int cell) {
+        return mix(cell * 3L + 2);
+    }
+
+    /**
+     * Scrambles a number into a well-distributed 64-bit key (SplitMix64).
+     *
+     * @param z The number to scramble.
+     * @return The key.
+     */
+    private static long mix(long z) {
+        z = (z + SEED) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}